@@ -0,0 +1,133 @@
+package com.meistermeier.lcd;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hot paths of {@link LcdPlate} against a {@link CountingI2CDevice}.
+ * <p>
+ * Run with {@code ./gradlew jmh}, which also enables the GC profiler for allocation
+ * rates. Besides ops/s every benchmark reports the I2C transactions and bytes it caused
+ * and the number of operations, all as totals over the measurement iterations; dividing
+ * by operations gives the traffic per operation.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LcdPlateBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Layout {
+
+        @Param({"16x2", "20x4"})
+        public String layout;
+    }
+
+    /**
+     * Plate under test, also carrying the bus traffic counters. JMH sums event counters
+     * over the iterations, so they hold raw totals per iteration, never ratios.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Plate {
+
+        public long transactions;
+        public long bytes;
+        public long operations;
+
+        CountingI2CDevice device;
+        LcdPlate lcd;
+        LcdFrameBuffer screen;
+        String fullScreen;
+        String line;
+        char[] lineChars;
+        byte[] encoded;
+
+        @Setup(Level.Trial)
+        public void setUp(Layout layout) {
+            String[] size = layout.layout.split("x");
+            int cols = Integer.parseInt(size[0]);
+            int rows = Integer.parseInt(size[1]);
+            device = new CountingI2CDevice();
+            lcd = new LcdPlate(device, rows, cols);
+            screen = new LcdFrameBuffer(lcd, rows, cols);
+            StringBuilder text = new StringBuilder();
+            for (int row = 0; row < rows; row++) {
+                if (row > 0) {
+                    text.append('\n');
+                }
+                for (int col = 0; col < cols; col++) {
+                    text.append((char) ('A' + (row * cols + col) % 26));
+                }
+            }
+            fullScreen = text.toString();
+            line = fullScreen.substring(0, cols);
+            lineChars = line.toCharArray();
+            encoded = new byte[4 * cols];
+            screen.render(fullScreen);
+        }
+
+        @Setup(Level.Iteration)
+        public void resetCounters() {
+            device.reset();
+            operations = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void collectCounters() {
+            transactions = device.getTransactions();
+            bytes = device.getBytes();
+        }
+    }
+
+    @Benchmark
+    public void messageFullScreen(Plate plate) {
+        plate.operations++;
+        plate.lcd.message(plate.fullScreen);
+    }
+
+    @Benchmark
+    public void writeLine(Plate plate) {
+        plate.operations++;
+        plate.lcd.write(plate.line);
+    }
+
+    @Benchmark
+    public byte[] encodeLine(Plate plate) {
+        plate.operations++;
+        byte[] encoded = plate.encoded;
+        int offset = 0;
+        for (char c : plate.lineChars) {
+            offset = LcdTransactionPlanner.out4(encoded, offset, 0b10000000, LcdCharset.encode(c));
+        }
+        return encoded;
+    }
+
+    @Benchmark
+    public void setCursor(Plate plate) {
+        plate.operations++;
+        plate.lcd.setCursor((int) (plate.operations & 7), 1);
+    }
+
+    @Benchmark
+    public void backlight(Plate plate) throws Exception {
+        plate.operations++;
+        plate.lcd.backlight((int) (plate.operations & 7));
+    }
+
+    @Benchmark
+    public void singleDigitUpdate(Plate plate) {
+        plate.operations++;
+        plate.screen.set(0, 3, (char) ('0' + plate.operations % 10));
+        plate.screen.flush();
+    }
+}
@@ -0,0 +1,236 @@
+package com.meistermeier.lcd;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe facade that moves all bus I/O of a {@link LcdPlate} onto one writer thread.
+ * <p>
+ * Line and backlight updates never block the caller and are coalesced: while an update
+ * is still waiting, a newer one for the same line replaces it and both callers get the
+ * same future, which completes once the newest content is on the glass. Text goes
+ * through a {@link LcdFrameBuffer}, so only changed characters are sent.
+ * <p>
+ * Other commands run in submission order before the pending lines are drawn. Their queue
+ * is bounded; {@link #submit(Consumer)} blocks while it is full. Commands must not write
+ * text themselves, or the frame buffer loses track of the glass.
+ * <p>
+ * A future completes exceptionally when its update failed on the bus, with the failure
+ * {@link LcdPlate#takeError()} reported for it.
+ */
+public class AsyncLcdPlate implements AutoCloseable {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private static final class Command {
+        private final Consumer<LcdPlate> action;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Command(Consumer<LcdPlate> action) {
+            this.action = action;
+        }
+    }
+
+    private final LcdPlate lcd;
+    private final LcdFrameBuffer screen;
+    private final int capacity;
+    private final Queue<Command> commands = new ArrayDeque<>();
+    private final String[] pendingLines;
+    private final CompletableFuture<?>[] lineFutures;
+    private int pendingBacklight = -1;
+    private CompletableFuture<Void> backlightFuture;
+    private boolean closed;
+    private final Thread writer;
+
+    public AsyncLcdPlate(LcdPlate lcd, int rows, int cols) {
+        this(lcd, rows, cols, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of queued commands before {@link #submit(Consumer)} blocks
+     */
+    public AsyncLcdPlate(LcdPlate lcd, int rows, int cols, int capacity) {
+        this.lcd = lcd;
+        this.screen = new LcdFrameBuffer(lcd, rows, cols);
+        this.capacity = capacity;
+        pendingLines = new String[rows];
+        lineFutures = new CompletableFuture<?>[rows];
+        writer = new Thread(this::run, "lcd-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Replace the content of a row, superseding any not yet drawn update of it
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized CompletableFuture<Void> setLine(int row, CharSequence text) {
+        checkOpen();
+        pendingLines[row] = text.toString();
+        if (lineFutures[row] == null) {
+            lineFutures[row] = new CompletableFuture<Void>();
+            notifyAll();
+        }
+        return (CompletableFuture<Void>) lineFutures[row];
+    }
+
+    /**
+     * Replace the whole screen. Newline starts the next row, missing rows are blank.
+     */
+    public synchronized CompletableFuture<Void> setFrame(CharSequence text) {
+        CompletableFuture<?>[] rows = new CompletableFuture<?>[pendingLines.length];
+        int start = 0;
+        for (int row = 0; row < rows.length; row++) {
+            int end = start;
+            while (end < text.length() && text.charAt(end) != '\n') {
+                end++;
+            }
+            rows[row] = setLine(row, text.subSequence(Math.min(start, end), end));
+            start = Math.min(end + 1, text.length());
+        }
+        return CompletableFuture.allOf(rows);
+    }
+
+    /**
+     * Set the background colour, superseding any not yet applied colour
+     */
+    public synchronized CompletableFuture<Void> backlight(int color) {
+        checkOpen();
+        pendingBacklight = color;
+        if (backlightFuture == null) {
+            backlightFuture = new CompletableFuture<>();
+            notifyAll();
+        }
+        return backlightFuture;
+    }
+
+    /**
+     * Run an arbitrary command on the writer thread, waiting while the queue is full
+     */
+    public synchronized CompletableFuture<Void> submit(Consumer<LcdPlate> action) throws InterruptedException {
+        checkOpen();
+        while (commands.size() >= capacity) {
+            wait();
+            checkOpen();
+        }
+        Command command = new Command(action);
+        commands.add(command);
+        notifyAll();
+        return command.done;
+    }
+
+    /**
+     * Draw everything still pending, then stop the writer thread
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+    }
+
+    private boolean hasWork() {
+        if (!commands.isEmpty() || backlightFuture != null) {
+            return true;
+        }
+        for (CompletableFuture<?> future : lineFutures) {
+            if (future != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run() {
+        Command[] batch = new Command[capacity];
+        CompletableFuture<?>[] drawn = new CompletableFuture<?>[pendingLines.length];
+        while (true) {
+            int commandCount = 0;
+            int color;
+            CompletableFuture<Void> colorDone;
+            synchronized (this) {
+                while (!hasWork()) {
+                    if (closed) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                while (!commands.isEmpty()) {
+                    batch[commandCount++] = commands.poll();
+                }
+                for (int row = 0; row < pendingLines.length; row++) {
+                    drawn[row] = lineFutures[row];
+                    if (drawn[row] != null) {
+                        screen.setLine(row, pendingLines[row]);
+                        pendingLines[row] = null;
+                        lineFutures[row] = null;
+                    }
+                }
+                color = pendingBacklight;
+                colorDone = backlightFuture;
+                backlightFuture = null;
+                // room in the command queue again
+                notifyAll();
+            }
+            for (int i = 0; i < commandCount; i++) {
+                lcd.takeError();
+                try {
+                    batch[i].action.accept(lcd);
+                    complete(batch[i].done, lcd.takeError());
+                } catch (RuntimeException e) {
+                    batch[i].done.completeExceptionally(e);
+                }
+                batch[i] = null;
+            }
+            if (colorDone != null) {
+                try {
+                    lcd.backlight(color);
+                    colorDone.complete(null);
+                } catch (Exception e) {
+                    colorDone.completeExceptionally(e);
+                }
+            }
+            lcd.takeError();
+            Exception failure;
+            try {
+                screen.flush();
+                failure = lcd.takeError();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            for (int row = 0; row < drawn.length; row++) {
+                if (drawn[row] != null) {
+                    complete((CompletableFuture<Void>) drawn[row], failure);
+                    drawn[row] = null;
+                }
+            }
+        }
+    }
+
+    private static void complete(CompletableFuture<Void> future, Exception failure) {
+        if (failure == null) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(failure);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.meistermeier.lcd;
+
+import java.util.Arrays;
+
+/**
+ * Horizontal bar with a resolution of one pixel column (five per character).
+ * <p>
+ * Uses four custom characters for the partly filled cells, uploaded once on the first
+ * draw; the cells in between are the full block and the blank of the character ROM.
+ */
+public class BarGraph extends Widget {
+
+    private static final char FULL = '\u2588';
+    private static final int GLYPHS = 4;
+
+    private final LcdPlate lcd;
+    private final int firstSlot;
+    private final double min;
+    private final double max;
+    private double value;
+    private int columns = -1;
+    private boolean uploaded;
+
+    /**
+     * @param firstSlot first of the four CGRAM slots used for partly filled cells
+     */
+    public BarGraph(LcdPlate lcd, int row, int col, int width, int firstSlot, double min, double max) {
+        super(row, col, width, 1);
+        if (firstSlot < 0 || firstSlot + GLYPHS > 8) {
+            throw new IllegalArgumentException("no room for " + GLYPHS + " glyphs from slot " + firstSlot);
+        }
+        this.lcd = lcd;
+        this.firstSlot = firstSlot;
+        this.min = min;
+        this.max = max;
+        this.value = min;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Only redraws if the bar gets at least one pixel column longer or shorter
+     */
+    public void setValue(double value) {
+        this.value = value;
+        double fraction = (value - min) / (max - min);
+        int pixels = (int) Math.round(Math.max(0, Math.min(1, fraction)) * width * 5);
+        if (pixels != columns) {
+            columns = pixels;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void drawRow(LcdFrameBuffer screen, int line) {
+        if (!uploaded) {
+            byte[] bitmap = new byte[8];
+            for (int filled = 1; filled <= GLYPHS; filled++) {
+                Arrays.fill(bitmap, (byte) (0b11111 << (5 - filled) & 0b11111));
+                lcd.createChar(firstSlot + filled - 1, bitmap);
+            }
+            uploaded = true;
+        }
+        int pixels = Math.max(columns, 0);
+        for (int i = 0; i < width; i++) {
+            int filled = Math.max(0, Math.min(5, pixels - i * 5));
+            char c = filled == 0 ? ' ' : filled == 5 ? FULL : (char) (firstSlot + filled - 1);
+            screen.set(row + line, col + i, c);
+        }
+    }
+}
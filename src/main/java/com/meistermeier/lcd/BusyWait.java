@@ -0,0 +1,27 @@
+package com.meistermeier.lcd;
+
+/**
+ * How the driver waits for a clear or home instruction to complete before sending the
+ * next one. All other instructions finish faster than the bus can deliver the next.
+ */
+public enum BusyWait {
+
+    /**
+     * Read the busy flag until it clears, giving up after a timeout. Costs several bus
+     * transfers per poll plus two port direction changes.
+     */
+    POLL,
+
+    /**
+     * Sleep for the execution time from the datasheet, no bus traffic
+     */
+    FIXED_DELAY,
+
+    /**
+     * Sleep for the longest execution time measured so far, but at least for the one from
+     * the datasheet, e.g. for displays running on a slow oscillator; until there is a
+     * measurement for an instruction, it is polled (and measured) instead
+     */
+    CALIBRATED
+
+}
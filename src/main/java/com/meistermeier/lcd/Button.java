@@ -16,4 +16,11 @@ public enum Button {
     public int getMappedCode() {
         return mappedCode;
     }
+
+    /**
+     * @return whether this button is set in a bitmask as returned by {@link LcdPlate#buttons()}
+     */
+    public boolean isIn(int buttons) {
+        return (buttons >> mappedCode & 1) != 0;
+    }
 }
@@ -0,0 +1,64 @@
+package com.meistermeier.lcd;
+
+/**
+ * Change of button state, delivered to {@link ButtonListener}s.
+ */
+public class ButtonEvent {
+
+    public enum Type {
+        PRESSED,
+        RELEASED,
+        /**
+         * Pressed and released again before a long press, not as part of a chord
+         */
+        CLICK,
+        LONG_PRESS,
+        /**
+         * Repeated while held down after a long press
+         */
+        REPEAT,
+        /**
+         * Several buttons held down together; the button is null, see {@link #getButtons()}
+         */
+        CHORD
+    }
+
+    private final Type type;
+    private final Button button;
+    private final int buttons;
+    private final long timestamp;
+
+    public ButtonEvent(Type type, Button button, int buttons, long timestamp) {
+        this.type = type;
+        this.button = button;
+        this.buttons = buttons;
+        this.timestamp = timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Button getButton() {
+        return button;
+    }
+
+    /**
+     * @return bitmask of all buttons held down when the event occurred, see {@link Button#getMappedCode()}
+     */
+    public int getButtons() {
+        return buttons;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the change was detected
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return type + (button != null ? " " + button : "") + " (buttons " + Integer.toBinaryString(buttons) + ")";
+    }
+}
@@ -0,0 +1,97 @@
+package com.meistermeier.lcd;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers button presses and releases without polling the bus: interrupt-on-change is
+ * enabled for the five button pins, and a background thread reads the captured state
+ * (INTCAPA) once per interrupt.
+ * <p>
+ * A change that happens while an interrupt is still pending doesn't raise another one,
+ * so without interrupts for a while the thread re-reads GPIOA once to catch up.
+ */
+public class ButtonInterruptMonitor {
+
+    private static final long RESYNC_MILLIS = 1000;
+
+    private final LcdPlate lcd;
+    private final ButtonInterruptSource interruptSource;
+    private final List<ButtonListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Thread worker;
+    private int buttons;
+
+    public ButtonInterruptMonitor(LcdPlate lcd, ButtonInterruptSource interruptSource) {
+        this.lcd = lcd;
+        this.interruptSource = interruptSource;
+    }
+
+    public void addListener(ButtonListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ButtonListener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized void start() throws IOException {
+        if (worker != null) {
+            return;
+        }
+        lcd.enableButtonInterrupts();
+        buttons = lcd.buttons();
+        worker = new Thread(this::run, "lcd-button-interrupts");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() throws IOException {
+        if (worker == null) {
+            return;
+        }
+        worker.interrupt();
+        worker = null;
+        lcd.disableButtonInterrupts();
+    }
+
+    private void run() {
+        Thread self = Thread.currentThread();
+        while (worker == self) {
+            try {
+                int state;
+                boolean interrupted = interruptSource.await(RESYNC_MILLIS, TimeUnit.MILLISECONDS);
+                long timestamp = System.nanoTime();
+                if (interrupted) {
+                    state = lcd.readButtonInterrupt();
+                } else {
+                    state = lcd.buttons();
+                }
+                dispatch(state, timestamp);
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void dispatch(int state, long timestamp) {
+        int changed = state ^ buttons;
+        buttons = state;
+        if (changed == 0) {
+            return;
+        }
+        for (Button button : Button.values()) {
+            int bit = 1 << button.getMappedCode();
+            if ((changed & bit) != 0) {
+                ButtonEvent.Type type = (state & bit) != 0 ? ButtonEvent.Type.PRESSED : ButtonEvent.Type.RELEASED;
+                ButtonEvent event = new ButtonEvent(type, button, state, timestamp);
+                for (ButtonListener listener : listeners) {
+                    listener.buttonEvent(event);
+                }
+            }
+        }
+    }
+}
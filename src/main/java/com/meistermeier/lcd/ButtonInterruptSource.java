@@ -0,0 +1,18 @@
+package com.meistermeier.lcd;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signals the MCP23017 INTA line, i.e. that at least one button changed since the
+ * interrupt was last cleared.
+ */
+public interface ButtonInterruptSource {
+
+    /**
+     * Block until the interrupt line is asserted.
+     *
+     * @return false if the timeout elapsed first
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException;
+
+}
@@ -0,0 +1,7 @@
+package com.meistermeier.lcd;
+
+public interface ButtonListener {
+
+    void buttonEvent(ButtonEvent event);
+
+}
@@ -0,0 +1,167 @@
+package com.meistermeier.lcd;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples all buttons with a single read of GPIOA per tick and turns the raw state into
+ * debounced events: {@link ButtonEvent.Type#PRESSED PRESSED}/{@link ButtonEvent.Type#RELEASED RELEASED},
+ * {@link ButtonEvent.Type#CLICK CLICK}, {@link ButtonEvent.Type#LONG_PRESS LONG_PRESS}
+ * followed by {@link ButtonEvent.Type#REPEAT REPEAT}, and {@link ButtonEvent.Type#CHORD CHORD}
+ * when several buttons are held together. Buttons of a chord don't produce clicks,
+ * long presses or repeats until all of them are released.
+ * <p>
+ * Timing has to be configured before {@link #start()}. Listeners are called on the
+ * sampling thread.
+ */
+public class ButtonSampler {
+
+    private static final Button[] BUTTONS = Button.values();
+
+    private final LcdPlate lcd;
+    private final List<ButtonListener> listeners = new CopyOnWriteArrayList<>();
+    private long sampleMillis = 10;
+    private long debounceMillis = 30;
+    private long longPressMillis = 800;
+    private long repeatMillis = 200;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> sampling;
+
+    // per button state, indexed by mapped code
+    private final boolean[] raw = new boolean[BUTTONS.length];
+    private final long[] rawSince = new long[BUTTONS.length];
+    private final boolean[] pressed = new boolean[BUTTONS.length];
+    private final long[] pressedAt = new long[BUTTONS.length];
+    private final boolean[] longPressed = new boolean[BUTTONS.length];
+    private final long[] nextRepeat = new long[BUTTONS.length];
+    private int stable;
+    private int chord;
+
+    public ButtonSampler(LcdPlate lcd) {
+        this.lcd = lcd;
+    }
+
+    public void addListener(ButtonListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ButtonListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setSampleMillis(long sampleMillis) {
+        this.sampleMillis = sampleMillis;
+    }
+
+    /**
+     * @param debounceMillis how long a changed state has to persist before it counts
+     */
+    public void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    public void setLongPressMillis(long longPressMillis) {
+        this.longPressMillis = longPressMillis;
+    }
+
+    public void setRepeatMillis(long repeatMillis) {
+        this.repeatMillis = repeatMillis;
+    }
+
+    public synchronized void start() {
+        if (sampling != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lcd-button-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampling = executor.scheduleAtFixedRate(this::sample, 0, sampleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (sampling == null) {
+            return;
+        }
+        sampling.cancel(false);
+        executor.shutdown();
+        sampling = null;
+        executor = null;
+    }
+
+    private void sample() {
+        try {
+            update(lcd.buttons(), System.nanoTime());
+        } catch (IOException e) {
+            // skip this tick, the next one reads again
+            e.printStackTrace();
+        }
+    }
+
+    // Runs the debounce state machine of every button against one sample.
+    void update(int buttons, long now) {
+        long debounce = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        for (Button button : BUTTONS) {
+            int i = button.getMappedCode();
+            boolean down = button.isIn(buttons);
+            if (down != raw[i]) {
+                raw[i] = down;
+                rawSince[i] = now;
+            }
+            if (raw[i] != pressed[i] && now - rawSince[i] >= debounce) {
+                pressed[i] = raw[i];
+                if (pressed[i]) {
+                    stable |= 1 << i;
+                    pressedAt[i] = now;
+                    longPressed[i] = false;
+                    fire(ButtonEvent.Type.PRESSED, button, now);
+                } else {
+                    stable &= ~(1 << i);
+                    fire(ButtonEvent.Type.RELEASED, button, now);
+                    if (!longPressed[i] && (chord & 1 << i) == 0) {
+                        fire(ButtonEvent.Type.CLICK, button, now);
+                    }
+                }
+            }
+        }
+        if (Integer.bitCount(stable) > 1 && (stable | chord) != chord) {
+            chord |= stable;
+            fire(ButtonEvent.Type.CHORD, null, now);
+        }
+        if (stable == 0) {
+            chord = 0;
+        }
+        long longPress = TimeUnit.MILLISECONDS.toNanos(longPressMillis);
+        long repeat = TimeUnit.MILLISECONDS.toNanos(repeatMillis);
+        for (Button button : BUTTONS) {
+            int i = button.getMappedCode();
+            if (!pressed[i] || (chord & 1 << i) != 0) {
+                continue;
+            }
+            if (!longPressed[i] && now - pressedAt[i] >= longPress) {
+                longPressed[i] = true;
+                nextRepeat[i] = now + repeat;
+                fire(ButtonEvent.Type.LONG_PRESS, button, now);
+            } else if (longPressed[i] && now - nextRepeat[i] >= 0) {
+                nextRepeat[i] += repeat;
+                fire(ButtonEvent.Type.REPEAT, button, now);
+            }
+        }
+    }
+
+    private void fire(ButtonEvent.Type type, Button button, long timestamp) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        ButtonEvent event = new ButtonEvent(type, button, stable, timestamp);
+        for (ButtonListener listener : listeners) {
+            listener.buttonEvent(event);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.meistermeier.lcd;
+
+import com.pi4j.io.gpio.GpioFactory;
+import com.pi4j.io.gpio.GpioPinDigitalInput;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinPullResistance;
+import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
+import com.pi4j.io.gpio.event.GpioPinListenerDigital;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interrupt source for the INTA pin of the plate wired to a Raspberry Pi GPIO. The
+ * MCP23017 drives INTA low (active-low push-pull) while an interrupt is pending.
+ */
+public class GpioButtonInterruptSource implements ButtonInterruptSource, GpioPinListenerDigital {
+
+    private final Semaphore edges = new Semaphore(0);
+
+    public GpioButtonInterruptSource(GpioPinDigitalInput interruptPin) {
+        interruptPin.addListener(this);
+    }
+
+    /**
+     * Provision the given Raspberry Pi pin as input and listen to it
+     */
+    public GpioButtonInterruptSource(Pin interruptPin) {
+        this(GpioFactory.getInstance().provisionDigitalInputPin(interruptPin, PinPullResistance.PULL_UP));
+    }
+
+    @Override
+    public void handleGpioPinDigitalStateChangeEvent(GpioPinDigitalStateChangeEvent event) {
+        if (event.getState() == PinState.LOW) {
+            edges.release();
+        }
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        boolean signalled = edges.tryAcquire(timeout, unit);
+        // one read handles every edge that piled up meanwhile
+        edges.drainPermits();
+        return signalled;
+    }
+}
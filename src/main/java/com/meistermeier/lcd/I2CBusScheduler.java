@@ -0,0 +1,259 @@
+package com.meistermeier.lcd;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+import com.pi4j.io.i2c.I2CFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out one I2C bus to several devices, one transfer at a time, giving precedence
+ * to clients with higher priority.
+ * <p>
+ * Every device on the bus is wrapped in a {@link Client}. A transfer waits while another
+ * one is on the bus or while a client with higher priority is waiting, so a sensor read
+ * is delayed by at most one transfer of a lower priority client. The plate is a good
+ * neighbour this way: its text goes out in block writes of at most
+ * {@link LcdPlate#setMaxTransferSize(int)} bytes and busy flag polling is one short
+ * transfer per step, so lowering the transfer size bounds the slices further.
+ * <p>
+ * Each client accounts for the time it held the bus and the time it waited for it.
+ */
+public class I2CBusScheduler {
+
+    public static final int PRIORITY_DISPLAY = 0;
+    public static final int PRIORITY_SENSOR = 10;
+
+    private final I2CBus bus;
+    private final List<Client> clients = new ArrayList<>();
+    private boolean busy;
+
+    /**
+     * Schedule devices of an I2C bus of the Pi, see {@link #open(int, String, int)}
+     */
+    public I2CBusScheduler(int busNumber) throws IOException {
+        this.bus = I2CFactory.getInstance(busNumber);
+    }
+
+    /**
+     * Schedule devices passed to {@link #add(I2CDevice, String, int)}, e.g. emulated ones
+     */
+    public I2CBusScheduler() {
+        this.bus = null;
+    }
+
+    /**
+     * @param priority higher goes first, e.g. {@link #PRIORITY_SENSOR}
+     */
+    public Client open(int deviceAddress, String name, int priority) throws IOException {
+        if (bus == null) {
+            throw new IllegalStateException("no bus to open devices on");
+        }
+        return add(bus.getDevice(deviceAddress), name, priority);
+    }
+
+    /**
+     * @param priority higher goes first, e.g. {@link #PRIORITY_SENSOR}
+     */
+    public synchronized Client add(I2CDevice device, String name, int priority) {
+        Client client = new Client(device, name, priority);
+        clients.add(client);
+        return client;
+    }
+
+    public synchronized List<Client> getClients() {
+        return new ArrayList<>(clients);
+    }
+
+    private synchronized void acquire(Client client) throws InterruptedIOException {
+        client.waiting++;
+        try {
+            while (busy || higherWaiting(client.priority)) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            client.waiting--;
+            // lower priority clients may have waited for this one only
+            notifyAll();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for the bus");
+        }
+        client.waiting--;
+        busy = true;
+    }
+
+    private synchronized void release() {
+        busy = false;
+        notifyAll();
+    }
+
+    private boolean higherWaiting(int priority) {
+        for (Client client : clients) {
+            if (client.priority > priority && client.waiting > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A device on the scheduled bus. Pass it wherever the device itself would be used,
+     * e.g. to {@link LcdPlate#LcdPlate(I2CDevice, int, int)}.
+     */
+    public final class Client implements I2CDevice {
+
+        private final I2CDevice device;
+        private final String name;
+        private final int priority;
+        // transfers waiting for the bus, guarded by the scheduler
+        private int waiting;
+
+        private final LongAdder transfers = new LongAdder();
+        private final LongAdder busNanos = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private Client(I2CDevice device, String name, int priority) {
+            this.device = device;
+            this.name = name;
+            this.priority = priority;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public long getTransfers() {
+            return transfers.sum();
+        }
+
+        /**
+         * @return time spent on the bus in nanoseconds
+         */
+        public long getBusNanos() {
+            return busNanos.sum();
+        }
+
+        /**
+         * @return time spent waiting for the bus in nanoseconds
+         */
+        public long getWaitNanos() {
+            return waitNanos.sum();
+        }
+
+        public long getMaxWaitNanos() {
+            return maxWaitNanos.get();
+        }
+
+        @Override
+        public void write(byte b) throws IOException {
+            long start = begin();
+            try {
+                device.write(b);
+            } finally {
+                end(start);
+            }
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int size) throws IOException {
+            long start = begin();
+            try {
+                device.write(buffer, offset, size);
+            } finally {
+                end(start);
+            }
+        }
+
+        @Override
+        public void write(int address, byte b) throws IOException {
+            long start = begin();
+            try {
+                device.write(address, b);
+            } finally {
+                end(start);
+            }
+        }
+
+        @Override
+        public void write(int address, byte[] buffer, int offset, int size) throws IOException {
+            long start = begin();
+            try {
+                device.write(address, buffer, offset, size);
+            } finally {
+                end(start);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = begin();
+            try {
+                return device.read();
+            } finally {
+                end(start);
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int size) throws IOException {
+            long start = begin();
+            try {
+                return device.read(buffer, offset, size);
+            } finally {
+                end(start);
+            }
+        }
+
+        @Override
+        public int read(int address) throws IOException {
+            long start = begin();
+            try {
+                return device.read(address);
+            } finally {
+                end(start);
+            }
+        }
+
+        @Override
+        public int read(int address, byte[] buffer, int offset, int size) throws IOException {
+            long start = begin();
+            try {
+                return device.read(address, buffer, offset, size);
+            } finally {
+                end(start);
+            }
+        }
+
+        // Wait for the bus, returns when the transfer started.
+        private long begin() throws InterruptedIOException {
+            long requested = System.nanoTime();
+            acquire(this);
+            long start = System.nanoTime();
+            long waited = start - requested;
+            waitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            return start;
+        }
+
+        private void end(long start) {
+            busNanos.add(System.nanoTime() - start);
+            transfers.increment();
+            release();
+        }
+
+        @Override
+        public String toString() {
+            return name + " (priority " + priority + ")";
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.meistermeier.lcd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Binary log of I2C transactions as written by {@link RecordingI2CDevice}.
+ * <p>
+ * The file starts with a 16 byte header (magic, version, wall clock time of the start in
+ * milliseconds). Each record then holds the operation, the {@link System#nanoTime()}
+ * offset to the start, the register, the payload length and the payload: the bytes
+ * written, or the bytes read. The first zero operation byte ends the log.
+ */
+public final class I2CLog {
+
+    static final int MAGIC = 0x4C434452; // "LCDR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 12;
+
+    public static final int WRITE = 1;
+    public static final int WRITE_REGISTER = 2;
+    public static final int READ = 3;
+    public static final int READ_REGISTER = 4;
+    // set on the operation when the transfer threw
+    static final int FAILED = 0x80;
+
+    private I2CLog() {
+    }
+
+    /**
+     * One transaction of the log
+     */
+    public static final class Record {
+
+        private final int operation;
+        private final boolean failed;
+        private final long timestampNanos;
+        private final int register;
+        private final byte[] data;
+
+        Record(int operation, boolean failed, long timestampNanos, int register, byte[] data) {
+            this.operation = operation;
+            this.failed = failed;
+            this.timestampNanos = timestampNanos;
+            this.register = register;
+            this.data = data;
+        }
+
+        /**
+         * @return one of {@link #WRITE}, {@link #WRITE_REGISTER}, {@link #READ}, {@link #READ_REGISTER}
+         */
+        public int getOperation() {
+            return operation;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public boolean isRead() {
+            return operation == READ || operation == READ_REGISTER;
+        }
+
+        public boolean hasRegister() {
+            return operation == WRITE_REGISTER || operation == READ_REGISTER;
+        }
+
+        /**
+         * @return nanoseconds since the recording started
+         */
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+
+        public int getRegister() {
+            return register;
+        }
+
+        /**
+         * @return bytes written or read
+         */
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    /**
+     * Hand every record of a log to the consumer, in order
+     *
+     * @return wall clock time the recording started, in milliseconds
+     */
+    public static long read(Path file, Consumer<Record> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("not an I2C log: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported I2C log version " + version + ": " + file);
+            }
+            long startMillis = buffer.getLong();
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int operation = buffer.get() & 0xFF;
+                if (operation == 0) {
+                    break;
+                }
+                long timestamp = buffer.getLong();
+                int register = buffer.get() & 0xFF;
+                int length = buffer.getShort() & 0xFFFF;
+                if (buffer.remaining() < length) {
+                    break;
+                }
+                byte[] data = new byte[length];
+                buffer.get(data);
+                consumer.accept(new Record(operation & ~FAILED, (operation & FAILED) != 0, timestamp, register, data));
+            }
+            return startMillis;
+        }
+    }
+
+    static void writeHeader(ByteBuffer buffer, long startMillis) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(startMillis);
+    }
+}
@@ -0,0 +1,138 @@
+package com.meistermeier.lcd;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics of an {@link I2CLog}: throughput, transactions per frame and wasted writes.
+ * <p>
+ * A frame is a burst of transactions, separated from the next one by an idle gap. A write
+ * is wasted when it sets a single register to the value it was last set to.
+ * <p>
+ * Run with the log file (and optionally the frame gap in milliseconds) as arguments to
+ * print the report.
+ */
+public class I2CLogAnalyzer {
+
+    private static final long DEFAULT_FRAME_GAP_MILLIS = 5;
+
+    private final long frameGapNanos;
+    private final int[] lastValues = new int[256];
+    private long transactions;
+    private long failed;
+    private long bytesWritten;
+    private long bytesRead;
+    private long frames;
+    private long wastedWrites;
+    private long first = -1;
+    private long last;
+
+    private I2CLogAnalyzer(long frameGapMillis) {
+        frameGapNanos = TimeUnit.MILLISECONDS.toNanos(frameGapMillis);
+        Arrays.fill(lastValues, -1);
+    }
+
+    public static Report analyze(Path log) throws IOException {
+        return analyze(log, DEFAULT_FRAME_GAP_MILLIS);
+    }
+
+    /**
+     * @param frameGapMillis idle time that separates two frames
+     */
+    public static Report analyze(Path log, long frameGapMillis) throws IOException {
+        I2CLogAnalyzer analyzer = new I2CLogAnalyzer(frameGapMillis);
+        I2CLog.read(log, analyzer::add);
+        return analyzer.new Report();
+    }
+
+    private void add(I2CLog.Record record) {
+        long timestamp = record.getTimestampNanos();
+        if (first < 0) {
+            first = timestamp;
+            frames = 1;
+        } else if (timestamp - last >= frameGapNanos) {
+            frames++;
+        }
+        last = timestamp;
+        transactions++;
+        if (record.isFailed()) {
+            failed++;
+            return;
+        }
+        byte[] data = record.getData();
+        if (record.isRead()) {
+            bytesRead += data.length;
+            return;
+        }
+        bytesWritten += data.length;
+        if (!record.hasRegister() || data.length == 0) {
+            return;
+        }
+        int register = record.getRegister();
+        int value = data[data.length - 1] & 0xFF;
+        if (data.length == 1 && lastValues[register] == value) {
+            wastedWrites++;
+        }
+        lastValues[register] = value;
+    }
+
+    public class Report {
+
+        public long getTransactions() {
+            return transactions;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getDurationNanos() {
+            return first < 0 ? 0 : last - first;
+        }
+
+        public double getBytesPerSecond() {
+            long duration = getDurationNanos();
+            return duration == 0 ? 0 : (bytesWritten + bytesRead) * 1e9 / duration;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public double getTransactionsPerFrame() {
+            return frames == 0 ? 0 : (double) transactions / frames;
+        }
+
+        public long getWastedWrites() {
+            return wastedWrites;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d transactions (%d failed) in %.3f s, %d bytes written, %d read, %.0f bytes/s%n"
+                            + "%d frames, %.1f transactions per frame, %d wasted writes",
+                    transactions, failed, getDurationNanos() / 1e9, bytesWritten, bytesRead, getBytesPerSecond(),
+                    frames, getTransactionsPerFrame(), wastedWrites);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: I2CLogAnalyzer <log file> [frame gap millis]");
+            System.exit(1);
+        }
+        long gap = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_FRAME_GAP_MILLIS;
+        System.out.println(analyze(Paths.get(args[0]), gap));
+    }
+}
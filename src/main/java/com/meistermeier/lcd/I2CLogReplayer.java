@@ -0,0 +1,82 @@
+package com.meistermeier.lcd;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the transactions of an {@link I2CLog} again, e.g. to an {@link LcdPlateEmulator}
+ * or the real bus. Reads are repeated as well (the port expander reacts to them), their
+ * results are dropped. Transactions that failed while recording are skipped.
+ */
+public class I2CLogReplayer {
+
+    private final I2CDevice device;
+    private final boolean originalSpeed;
+    private final byte[] readBuffer = new byte[0x10000];
+    private long start;
+    private long replayed;
+
+    /**
+     * @param originalSpeed keep the recorded timing instead of replaying as fast as possible
+     */
+    public I2CLogReplayer(I2CDevice device, boolean originalSpeed) {
+        this.device = device;
+        this.originalSpeed = originalSpeed;
+    }
+
+    /**
+     * @return number of transactions sent
+     */
+    public long replay(Path log) throws IOException {
+        start = System.nanoTime();
+        replayed = 0;
+        try {
+            I2CLog.read(log, this::replay);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return replayed;
+    }
+
+    private void replay(I2CLog.Record record) {
+        if (record.isFailed()) {
+            return;
+        }
+        if (originalSpeed) {
+            long remaining;
+            while ((remaining = start + record.getTimestampNanos() - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+        byte[] data = record.getData();
+        try {
+            switch (record.getOperation()) {
+                case I2CLog.WRITE:
+                    device.write(data, 0, data.length);
+                    break;
+                case I2CLog.WRITE_REGISTER:
+                    device.write(record.getRegister(), data, 0, data.length);
+                    break;
+                case I2CLog.READ:
+                    device.read(readBuffer, 0, data.length);
+                    break;
+                case I2CLog.READ_REGISTER:
+                    if (data.length == 1) {
+                        device.read(record.getRegister());
+                    } else {
+                        device.read(record.getRegister(), readBuffer, 0, data.length);
+                    }
+                    break;
+                default:
+                    return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        replayed++;
+    }
+}
@@ -0,0 +1,30 @@
+package com.meistermeier.lcd;
+
+/**
+ * Single row of static text
+ */
+public class Label extends Widget {
+
+    private CharSequence text;
+
+    public Label(int row, int col, int width, CharSequence text) {
+        super(row, col, width, 1);
+        this.text = text;
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public void setText(CharSequence text) {
+        if (!text.toString().contentEquals(this.text)) {
+            this.text = text;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void drawRow(LcdFrameBuffer screen, int line) {
+        put(screen, line, text);
+    }
+}
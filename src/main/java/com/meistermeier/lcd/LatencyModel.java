@@ -0,0 +1,37 @@
+package com.meistermeier.lcd;
+
+/**
+ * Simulated duration of a single I2C transaction, used by the {@link LcdPlateEmulator}
+ * to advance its bus clock.
+ */
+public interface LatencyModel {
+
+    /**
+     * Transactions take no time at all
+     */
+    LatencyModel NONE = bytes -> 0;
+
+    /**
+     * @param bytes payload bytes moved by the transaction (register address excluded)
+     * @return simulated duration in nanoseconds
+     */
+    long transactionNanos(int bytes);
+
+    /**
+     * Constant cost per transaction plus a constant cost per payload byte
+     */
+    static LatencyModel fixed(long perTransactionNanos, long perByteNanos) {
+        return bytes -> perTransactionNanos + bytes * perByteNanos;
+    }
+
+    /**
+     * Wire time at the given bus clock: start, device address and register address, then
+     * 9 clocks (8 bits + ack) per payload byte, plus a fixed software overhead per
+     * transaction (syscall, driver).
+     */
+    static LatencyModel i2c(int clockHz, long overheadNanos) {
+        long nanosPerByte = 9 * 1_000_000_000L / clockHz;
+        return bytes -> overheadNanos + (2 + bytes) * nanosPerByte;
+    }
+
+}
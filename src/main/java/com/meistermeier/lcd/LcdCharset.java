@@ -0,0 +1,118 @@
+package com.meistermeier.lcd;
+
+import java.util.Arrays;
+
+/**
+ * Maps Unicode characters onto the character generator ROM of the HD44780 (ROM code A00,
+ * the one found on the plate).
+ * <p>
+ * Characters 0-7 address the custom CGRAM glyphs. Everything the ROM has no glyph for
+ * is shown as '?'.
+ */
+final class LcdCharset {
+
+    static final int FALLBACK = '?';
+
+    // ROM code for Latin-1 characters 0x00-0xFF
+    private static final byte[] LATIN1 = new byte[256];
+
+    static {
+        for (int c = 0; c < 256; c++) {
+            LATIN1[c] = (byte) FALLBACK;
+        }
+        for (int c = 0x00; c < 0x08; c++) {
+            LATIN1[c] = (byte) c;
+        }
+        for (int c = 0x20; c < 0x7E; c++) {
+            LATIN1[c] = (byte) c;
+        }
+        // A00 has the yen sign instead of the backslash
+        LATIN1['\\'] = (byte) FALLBACK;
+        LATIN1['\t'] = ' ';
+        LATIN1[0xA5] = 0x5C; // yen
+        LATIN1[0xB7] = (byte) 0xA5; // middle dot
+        LATIN1[0xB0] = (byte) 0xDF; // degree
+        LATIN1[0xE4] = (byte) 0xE1; // a umlaut
+        LATIN1[0xDF] = (byte) 0xE2; // sharp s
+        LATIN1[0xB5] = (byte) 0xE4; // micro
+        LATIN1[0xA2] = (byte) 0xEC; // cent
+        LATIN1[0xF1] = (byte) 0xEE; // n tilde
+        LATIN1[0xF6] = (byte) 0xEF; // o umlaut
+        LATIN1[0xFC] = (byte) 0xF5; // u umlaut
+        LATIN1[0xF7] = (byte) 0xFD; // division
+    }
+
+    // Character for every ROM code, UNKNOWN where there is none
+    private static final char[] DECODE = new char[256];
+
+    static final char UNKNOWN = '\uFFFF';
+
+    static {
+        Arrays.fill(DECODE, UNKNOWN);
+        // the first character mapping to a code wins, control characters aside
+        for (char c = 0; c < UNKNOWN; c++) {
+            int code = encode(c);
+            if ((c < 0x08 || c >= 0x20) && (code != FALLBACK || c == FALLBACK) && DECODE[code] == UNKNOWN) {
+                DECODE[code] = c;
+            }
+        }
+    }
+
+    private LcdCharset() {
+    }
+
+    /**
+     * @return character shown by the given ROM code, {@link #UNKNOWN} if it has none
+     */
+    static char decode(int code) {
+        return DECODE[code & 0xFF];
+    }
+
+    /**
+     * @return ROM code (0-255) showing the given character
+     */
+    static int encode(char c) {
+        if (c < 256) {
+            return LATIN1[c] & 0xFF;
+        }
+        if (c >= '\uFF61' && c <= '\uFF9F') {
+            // half-width katakana are laid out in ROM order
+            return c - '\uFF61' + 0xA1;
+        }
+        switch (c) {
+            case '\u2192': // right arrow
+                return 0x7E;
+            case '\u2190': // left arrow
+                return 0x7F;
+            case '\u03B1': // alpha
+                return 0xE0;
+            case '\u03B2': // beta
+                return 0xE2;
+            case '\u03B5': // epsilon
+                return 0xE3;
+            case '\u03BC': // mu
+                return 0xE4;
+            case '\u03C3': // sigma
+                return 0xE5;
+            case '\u03C1': // rho
+                return 0xE6;
+            case '\u221A': // square root
+                return 0xE8;
+            case '\u03B8': // theta
+                return 0xF2;
+            case '\u221E': // infinity
+                return 0xF3;
+            case '\u03A9': // Omega
+                return 0xF4;
+            case '\u03A3': // Sigma
+                return 0xF6;
+            case '\u03C0': // pi
+                return 0xF7;
+            case '\u2588': // full block
+                return 0xFF;
+            default:
+                return FALLBACK;
+        }
+    }
+
+}
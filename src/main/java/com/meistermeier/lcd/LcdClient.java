@@ -0,0 +1,140 @@
+package com.meistermeier.lcd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Connection to a {@link LcdServer}. Claim a region first, then write text into it
+ * (row and column relative to the region) and {@link #commit()} to show it.
+ * <p>
+ * Messages are buffered until a commit, a claim or a backlight change.
+ */
+public class LcdClient implements AutoCloseable {
+
+    private static final ButtonEvent.Type[] TYPES = ButtonEvent.Type.values();
+    private static final Button[] BUTTONS = Button.values();
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final List<ButtonListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread reader;
+    private int claimReply = -1;
+
+    public LcdClient() throws IOException {
+        this(LcdServer.DEFAULT_PORT);
+    }
+
+    public LcdClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        reader = new Thread(this::read, "lcd-client");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * @return whether the region is now owned by this client, false if it is out of the
+     * screen or overlaps the region of another client
+     */
+    public synchronized boolean claim(int row, int col, int width, int height) throws IOException {
+        out.writeByte(LcdProtocol.CLAIM);
+        out.writeByte(row);
+        out.writeByte(col);
+        out.writeByte(width);
+        out.writeByte(height);
+        out.flush();
+        claimReply = -1;
+        while (claimReply < 0) {
+            if (!reader.isAlive()) {
+                throw new IOException("connection closed");
+            }
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while claiming", e);
+            }
+        }
+        return claimReply == 1;
+    }
+
+    public synchronized void write(int row, int col, String text) throws IOException {
+        out.writeByte(LcdProtocol.TEXT);
+        out.writeByte(row);
+        out.writeByte(col);
+        out.writeUTF(text);
+    }
+
+    /**
+     * Show everything written since the last commit
+     */
+    public synchronized void commit() throws IOException {
+        out.writeByte(LcdProtocol.COMMIT);
+        out.flush();
+    }
+
+    public synchronized void backlight(int color) throws IOException {
+        out.writeByte(LcdProtocol.BACKLIGHT);
+        out.writeByte(color);
+        out.flush();
+    }
+
+    /**
+     * Receive the button events of the plate, on the connection's reader thread
+     */
+    public synchronized void addListener(ButtonListener listener) throws IOException {
+        if (listeners.isEmpty()) {
+            out.writeByte(LcdProtocol.SUBSCRIBE);
+            out.flush();
+        }
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private void read() {
+        try {
+            while (true) {
+                int message = in.read();
+                if (message < 0) {
+                    break;
+                }
+                if (message == LcdProtocol.CLAIMED) {
+                    int reply = in.readUnsignedByte();
+                    synchronized (this) {
+                        claimReply = reply;
+                        notifyAll();
+                    }
+                } else if (message == LcdProtocol.EVENT) {
+                    ButtonEvent.Type type = TYPES[in.readUnsignedByte()];
+                    int button = in.readUnsignedByte();
+                    int buttons = in.readUnsignedByte();
+                    ButtonEvent event = new ButtonEvent(type, button == LcdProtocol.NO_BUTTON ? null : BUTTONS[button],
+                            buttons, System.nanoTime());
+                    for (ButtonListener listener : listeners) {
+                        listener.buttonEvent(event);
+                    }
+                } else {
+                    throw new IOException("unknown message " + message);
+                }
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
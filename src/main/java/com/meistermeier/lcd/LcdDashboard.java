@@ -0,0 +1,231 @@
+package com.meistermeier.lcd;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Live values at fixed positions of the screen, e.g. a temperature and a queue depth.
+ * <p>
+ * Every field binds a region of one row to a value supplier. Each sample formats all
+ * values into a {@link LcdFrameBuffer} (numbers without allocating) and sends only the
+ * characters that differ from the glass, so fields that didn't change cost no bus
+ * traffic at all. Values not fitting into their field are shown as '#'.
+ * <p>
+ * The sample rate has to be configured before {@link #start()}. Suppliers are called on
+ * the sampling thread.
+ */
+public class LcdDashboard {
+
+    public enum Alignment {
+        LEFT,
+        RIGHT
+    }
+
+    private static final char OVERFLOW = '#';
+
+    private final LcdFrameBuffer screen;
+    // copied on change, so sampling iterates without allocating
+    private volatile Field[] fields = new Field[0];
+    private char[] buffer = new char[20];
+    private long sampleMillis = 1000;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> sampling;
+
+    public LcdDashboard(LcdFrameBuffer screen) {
+        this.screen = screen;
+    }
+
+    public void setSampleMillis(long sampleMillis) {
+        this.sampleMillis = sampleMillis;
+    }
+
+    public void bind(int row, int col, int width, Alignment alignment, LongSupplier value) {
+        add(new Field(row, col, width, alignment) {
+            @Override
+            int format(char[] out) {
+                return formatLong(value.getAsLong(), out, 0);
+            }
+        });
+    }
+
+    /**
+     * @param decimals digits after the decimal point, rounded half up
+     */
+    public void bind(int row, int col, int width, Alignment alignment, DoubleSupplier value, int decimals) {
+        add(new Field(row, col, width, alignment) {
+            @Override
+            int format(char[] out) {
+                return formatDouble(value.getAsDouble(), decimals, out);
+            }
+        });
+    }
+
+    public void bind(int row, int col, int width, Alignment alignment, Supplier<? extends CharSequence> value) {
+        add(new Field(row, col, width, alignment) {
+            @Override
+            int format(char[] out) {
+                CharSequence text = value.get();
+                int length = Math.min(text.length(), width);
+                for (int i = 0; i < length; i++) {
+                    out[i] = text.charAt(i);
+                }
+                // longer text is cut off rather than shown as overflow
+                return length;
+            }
+        });
+    }
+
+    public synchronized void clear() {
+        fields = new Field[0];
+    }
+
+    public synchronized void start() {
+        if (sampling != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lcd-dashboard");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampling = executor.scheduleAtFixedRate(this::sample, 0, sampleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (sampling == null) {
+            return;
+        }
+        sampling.cancel(false);
+        executor.shutdown();
+        sampling = null;
+        executor = null;
+    }
+
+    /**
+     * Sample every field once and send what changed
+     *
+     * @return number of characters written
+     */
+    public synchronized int sample() {
+        for (Field field : fields) {
+            try {
+                field.draw();
+            } catch (RuntimeException e) {
+                // a failing supplier must not stop the other fields
+                e.printStackTrace();
+            }
+        }
+        return screen.flush();
+    }
+
+    private synchronized void add(Field field) {
+        if (buffer.length < field.width + 1) {
+            buffer = new char[field.width + 1];
+        }
+        Field[] grown = Arrays.copyOf(fields, fields.length + 1);
+        grown[fields.length] = field;
+        fields = grown;
+    }
+
+    private abstract class Field {
+        private final int row;
+        private final int col;
+        private final int width;
+        private final Alignment alignment;
+
+        private Field(int row, int col, int width, Alignment alignment) {
+            this.row = row;
+            this.col = col;
+            this.width = width;
+            this.alignment = alignment;
+        }
+
+        /**
+         * Format the value into out, which is one character longer than the field
+         *
+         * @return number of characters, more than the width (or -1) for overflow
+         */
+        abstract int format(char[] out);
+
+        private void draw() {
+            char[] out = buffer;
+            int length = format(out);
+            if (length < 0 || length > width) {
+                for (int i = 0; i < width; i++) {
+                    screen.set(row, col + i, OVERFLOW);
+                }
+                return;
+            }
+            int pad = alignment == Alignment.RIGHT ? width - length : 0;
+            for (int i = 0; i < width; i++) {
+                int index = i - pad;
+                screen.set(row, col + i, index >= 0 && index < length ? out[index] : ' ');
+            }
+        }
+    }
+
+    // Decimal digits of value at offset, -1 if they don't fit.
+    static int formatLong(long value, char[] out, int offset) {
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int length = offset + digits + (value < 0 ? 1 : 0);
+        if (length > out.length) {
+            return -1;
+        }
+        if (value < 0) {
+            out[offset] = '-';
+        }
+        int index = length;
+        long rest = value;
+        do {
+            out[--index] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        return length;
+    }
+
+    static int formatDouble(double value, int decimals, char[] out) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return -1;
+        }
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10;
+        }
+        double scaled = Math.abs(value) * scale + 0.5;
+        if (scaled >= Long.MAX_VALUE) {
+            return -1;
+        }
+        long units = (long) scaled;
+        long whole = units / scale;
+        long fraction = units % scale;
+        int offset = 0;
+        if (value < 0 && units != 0) {
+            if (out.length < 1) {
+                return -1;
+            }
+            out[offset++] = '-';
+        }
+        int length = formatLong(whole, out, offset);
+        if (length < 0 || decimals == 0) {
+            return length;
+        }
+        if (length + 1 + decimals > out.length) {
+            return -1;
+        }
+        out[length] = '.';
+        for (int i = length + decimals; i > length; i--) {
+            out[i] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        return length + 1 + decimals;
+    }
+}
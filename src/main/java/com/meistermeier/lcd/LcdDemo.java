@@ -23,32 +23,30 @@ public class LcdDemo {
         Thread.sleep(2000);
         lcd.clear();
         lcd.backlight(WHITE.getColorValue());
-        lcd.message("Try buttons");
+        // from here on only changed characters get written, no clear() flicker
+        LcdFrameBuffer screen = new LcdFrameBuffer(lcd, 2, 16);
+        screen.render("Try buttons");
 
         long countdownTimestamp = System.currentTimeMillis();
         while (true) {
-            // you could also use LcdPlate#buttons() to retrieve a bitmask
-            // this will allow simultaneous pressing
-            boolean rightPressed = lcd.buttonPressed(Button.RIGHT);
-            boolean leftPressed = lcd.buttonPressed(Button.LEFT);
-            boolean upPressed = lcd.buttonPressed(Button.UP);
-            boolean downPressed = lcd.buttonPressed(Button.DOWN);
-            boolean selectPressed = lcd.buttonPressed(Button.SELECT);
+            // one read for all buttons, this also allows simultaneous pressing
+            // (see ButtonSampler for debounced click/long press/chord events)
+            int buttons = lcd.buttons();
+            boolean rightPressed = Button.RIGHT.isIn(buttons);
+            boolean leftPressed = Button.LEFT.isIn(buttons);
+            boolean upPressed = Button.UP.isIn(buttons);
+            boolean downPressed = Button.DOWN.isIn(buttons);
+            boolean selectPressed = Button.SELECT.isIn(buttons);
             if (rightPressed) {
-                lcd.clear();
-                lcd.message("right");
+                screen.render("right");
             } else if (leftPressed) {
-                lcd.clear();
-                lcd.message("left");
+                screen.render("left");
             } else if (upPressed) {
-                lcd.clear();
-                lcd.message("up");
+                screen.render("up");
             } else if (downPressed) {
-                lcd.clear();
-                lcd.message("down");
+                screen.render("down");
             } else if (selectPressed) {
-                lcd.clear();
-                lcd.message("select");
+                screen.render("select");
                 if (System.currentTimeMillis() - countdownTimestamp > 2000) {
                     lcd.clear();
                     lcd.backlight(OFF.getColorValue());
@@ -56,8 +54,7 @@ public class LcdDemo {
                     System.exit(0);
                 }
             } else {
-                lcd.clear();
-                lcd.message("Try buttons");
+                screen.render("Try buttons");
                 countdownTimestamp = System.currentTimeMillis();
             }
             Thread.sleep(50);
@@ -0,0 +1,362 @@
+package com.meistermeier.lcd;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Backlight brightness and colour fades by software PWM of the three LED bits.
+ * <p>
+ * Every PWM period starts with all lit channels on and switches each one off after its
+ * share of {@link #LEVELS} steps, channels with the same level at the same edge. An edge
+ * is a single {@link LcdPlate#backlight(int)}, which writes only the ports that change:
+ * GPIOA for red and green, GPIOB for blue. (The ports can't go out in one transfer, the
+ * expander runs with sequential addressing off and they aren't adjacent in Bank 1.)
+ * Channels fully on or off need no edges, so a static colour costs no bus traffic.
+ * <p>
+ * The period follows the bus time measured over whole periods: the shortest step has
+ * to be longer than an edge, and all edges of a period together may take at most
+ * {@link #setMaxBusShare(double) a share} of the bus (a quarter by default), so the
+ * frequency is as high as that allows, between 50 and 500 Hz. {@link #getBusShare()}
+ * reports what the PWM actually uses.
+ * <p>
+ * Edges are timed by parking, the worst lateness is reported by
+ * {@link #getMaxJitterNanos()}. Spinning the last stretch before each edge makes them
+ * more precise at the cost of a busy CPU, see {@link #setSpinMicros(long)}.
+ * <p>
+ * The blue LED shares GPIOB with the display, so the dimmer owns the plate: anything
+ * else has to be {@link #submit(Consumer) submitted}. Submitted commands go first, they
+ * run at the next period boundary and stretch that period while they last.
+ */
+public class LcdDimmer implements AutoCloseable {
+
+    public static final int LEVELS = 16;
+
+    private static final long MIN_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long MAX_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final double DEFAULT_MAX_BUS_SHARE = 0.25;
+    // a step should take at least this many bus writes
+    private static final int STEP_MARGIN = 2;
+
+    private static final class Command {
+        private final Consumer<LcdPlate> action;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Command(Consumer<LcdPlate> action) {
+            this.action = action;
+        }
+    }
+
+    private final LcdPlate lcd;
+    private final Queue<Command> commands = new ArrayDeque<>();
+    // red, green, blue in steps of LEVELS
+    private final int[] from = new int[3];
+    private final int[] to = new int[3];
+    private long fadeStart;
+    private long fadeNanos;
+    private boolean closed;
+    private final Thread pwm;
+
+    // owned by the PWM thread
+    private final int[] levels = new int[3];
+    private final int[] edges = new int[3];
+    // colour bits last written, -1 if unknown
+    private int shown = -1;
+    private long writeNanos;
+    // bus time of the edges per period, 0 while the colour is static
+    private volatile long busNanos;
+    private volatile long periodNanos = MIN_PERIOD_NANOS;
+    private volatile long maxJitterNanos;
+    private volatile double maxBusShare = DEFAULT_MAX_BUS_SHARE;
+    // edges are parked for until this close, then spun for
+    private volatile long spinNanos;
+
+    public LcdDimmer(LcdPlate lcd) {
+        this.lcd = lcd;
+        pwm = new Thread(this::run, "lcd-pwm");
+        pwm.setDaemon(true);
+        pwm.start();
+    }
+
+    /**
+     * @param maxBusShare part of the bus time the PWM edges may take, e.g. 0.25 leaves
+     *                    three quarters to the display and other devices
+     */
+    public void setMaxBusShare(double maxBusShare) {
+        if (maxBusShare <= 0 || maxBusShare > 1) {
+            throw new IllegalArgumentException("bus share out of (0, 1]: " + maxBusShare);
+        }
+        this.maxBusShare = maxBusShare;
+    }
+
+    /**
+     * @param spinMicros how long before an edge to stop parking and spin instead, 0 (the
+     *                   default) never spins
+     */
+    public void setSpinMicros(long spinMicros) {
+        this.spinNanos = TimeUnit.MICROSECONDS.toNanos(spinMicros);
+    }
+
+    /**
+     * Switch to a colour right away
+     *
+     * @param brightness 0 (off) to 1 (full)
+     */
+    public void setColor(LcdBackgroundColor color, double brightness) {
+        fadeTo(color, brightness, 0);
+    }
+
+    /**
+     * Switch to levels per channel right away, each 0 (off) to {@link #LEVELS} (full)
+     */
+    public synchronized void setLevels(int red, int green, int blue) {
+        checkOpen();
+        to[0] = clamp(red);
+        to[1] = clamp(green);
+        to[2] = clamp(blue);
+        System.arraycopy(to, 0, from, 0, 3);
+        fadeNanos = 0;
+        notifyAll();
+    }
+
+    /**
+     * Fade from the current levels to a colour
+     *
+     * @param brightness 0 (off) to 1 (full)
+     */
+    public synchronized void fadeTo(LcdBackgroundColor color, double brightness, long millis) {
+        checkOpen();
+        long now = System.nanoTime();
+        current(now, from);
+        int level = clamp((int) Math.round(brightness * LEVELS));
+        for (int channel = 0; channel < 3; channel++) {
+            to[channel] = (color.getColorValue() >> channel & 1) != 0 ? level : 0;
+        }
+        fadeStart = now;
+        fadeNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        notifyAll();
+    }
+
+    /**
+     * Run a command on the plate, e.g. writing text, ahead of the next PWM period
+     */
+    public synchronized CompletableFuture<Void> submit(Consumer<LcdPlate> action) {
+        checkOpen();
+        Command command = new Command(action);
+        commands.add(command);
+        notifyAll();
+        return command.done;
+    }
+
+    /**
+     * @return current PWM frequency in Hz
+     */
+    public double getFrequency() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / periodNanos;
+    }
+
+    /**
+     * @return part of the bus time taken by the edges of a period, 0 for a static colour
+     */
+    public double getBusShare() {
+        return (double) busNanos / periodNanos;
+    }
+
+    /**
+     * @return the latest an edge has been switched so far, in nanoseconds
+     */
+    public long getMaxJitterNanos() {
+        return maxJitterNanos;
+    }
+
+    /**
+     * Run the commands still pending and stop, leaving the backlight at the target levels
+     * rounded to on or off
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            pwm.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+    }
+
+    private static int clamp(int level) {
+        return Math.max(0, Math.min(LEVELS, level));
+    }
+
+    // Levels of the fade at the given time, guarded by this.
+    private void current(long now, int[] out) {
+        long elapsed = now - fadeStart;
+        if (fadeNanos <= 0 || elapsed >= fadeNanos) {
+            System.arraycopy(to, 0, out, 0, 3);
+            return;
+        }
+        for (int channel = 0; channel < 3; channel++) {
+            out[channel] = from[channel] + (int) ((to[channel] - from[channel]) * elapsed / fadeNanos);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Command command;
+            boolean pulse = false;
+            boolean stop = false;
+            synchronized (this) {
+                command = commands.poll();
+                if (command == null) {
+                    long now = System.nanoTime();
+                    current(now, levels);
+                    if (closed) {
+                        // round to on or off instead of leaving a channel half way
+                        for (int channel = 0; channel < 3; channel++) {
+                            levels[channel] = to[channel] * 2 >= LEVELS ? LEVELS : 0;
+                        }
+                        stop = true;
+                    } else {
+                        pulse = fadeNanos > 0 && now - fadeStart < fadeNanos;
+                        for (int level : levels) {
+                            pulse |= level > 0 && level < LEVELS;
+                        }
+                        if (!pulse && shown == mask(0)) {
+                            try {
+                                // static colour: nothing to do until something changes
+                                wait();
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                            continue;
+                        }
+                    }
+                }
+            }
+            if (command != null) {
+                try {
+                    command.action.accept(lcd);
+                    command.done.complete(null);
+                } catch (RuntimeException e) {
+                    command.done.completeExceptionally(e);
+                }
+            } else if (pulse) {
+                period();
+            } else {
+                busNanos = 0;
+                apply(mask(0));
+                if (stop) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // One PWM period with the current levels.
+    private void period() {
+        long start = System.nanoTime();
+        long period = periodNanos;
+        long bus = timedApply(mask(0));
+        int count = sortedEdges();
+        for (int i = 0; i < count; i++) {
+            long deadline = start + period * edges[i] / LEVELS;
+            waitUntil(deadline);
+            long late = System.nanoTime() - deadline;
+            if (late > maxJitterNanos) {
+                maxJitterNanos = late;
+            }
+            bus += timedApply(mask(edges[i]));
+        }
+        adapt(bus);
+        waitUntil(start + period);
+    }
+
+    // Distinct levels between off and full in ascending order, returns how many.
+    private int sortedEdges() {
+        int count = 0;
+        for (int level : levels) {
+            if (level <= 0 || level >= LEVELS || contains(edges, count, level)) {
+                continue;
+            }
+            int index = count++;
+            while (index > 0 && edges[index - 1] > level) {
+                edges[index] = edges[index - 1];
+                index--;
+            }
+            edges[index] = level;
+        }
+        return count;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Colour bits of the channels still on after the given step.
+    private int mask(int step) {
+        int color = 0;
+        for (int channel = 0; channel < 3; channel++) {
+            if (levels[channel] > step) {
+                color |= 1 << channel;
+            }
+        }
+        return color;
+    }
+
+    private void apply(int color) {
+        try {
+            lcd.backlight(color);
+            shown = color;
+        } catch (Exception e) {
+            shown = -1;
+            e.printStackTrace();
+        }
+    }
+
+    // Apply an edge, returns how long the bus took for it.
+    private long timedApply(int color) {
+        if (color == shown) {
+            // nothing to write, nothing to measure
+            return 0;
+        }
+        long start = System.nanoTime();
+        apply(color);
+        long took = System.nanoTime() - start;
+        writeNanos = writeNanos == 0 ? took : (writeNanos * 7 + took) / 8;
+        return took;
+    }
+
+    // Stretch the period until a step outlasts an edge and the edges keep to their share.
+    private void adapt(long bus) {
+        busNanos = busNanos == 0 ? bus : (busNanos * 7 + bus) / 8;
+        long period = Math.max(writeNanos * STEP_MARGIN * LEVELS, (long) (busNanos / maxBusShare));
+        periodNanos = Math.max(MIN_PERIOD_NANOS, Math.min(MAX_PERIOD_NANOS, period));
+    }
+
+    private void waitUntil(long deadline) {
+        long spin = spinNanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > spin) {
+            LockSupport.parkNanos(remaining - spin);
+        }
+        while (deadline - System.nanoTime() > 0) {
+            // spin the last stretch, parking isn't precise enough
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.meistermeier.lcd;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Retained-mode screen on top of {@link LcdPlate}.
+ * <p>
+ * Keeps a copy of what is currently on the glass, and on {@link #flush()} only sends the
+ * characters that differ from the next frame, instead of clear() plus a full message().
+ * Assumes the display is neither shifted nor written right to left behind its back;
+ * call {@link #invalidate()} after touching the plate directly.
+ */
+public class LcdFrameBuffer {
+
+    // A DDRAM address jump is one instruction, i.e. costs as much as one character.
+    // Gaps up to this size are rewritten instead of jumped over.
+    private static final int JUMP_COST = 1;
+
+    // Never a valid display character, forces a cell to be rewritten.
+    private static final char UNKNOWN = LcdCharset.UNKNOWN;
+
+    private final LcdPlate lcd;
+    private final int numLines;
+    private final int numCols;
+    // first DDRAM column of the window drawn into
+    private final int colOffset;
+    private final char[][] glass;
+    private final char[][] frame;
+    private int flushes;
+
+    /**
+     * @param lcd plate to draw on, expected to be cleared (e.g. freshly initialized)
+     */
+    public LcdFrameBuffer(LcdPlate lcd, int rows, int cols) {
+        this(lcd, rows, cols, 0);
+    }
+
+    /**
+     * @param colOffset DDRAM column of the first column, e.g. of a window not on screen
+     */
+    LcdFrameBuffer(LcdPlate lcd, int rows, int cols, int colOffset) {
+        this.lcd = lcd;
+        this.numLines = rows;
+        this.numCols = cols;
+        this.colOffset = colOffset;
+        glass = new char[rows][cols];
+        frame = new char[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            Arrays.fill(glass[row], ' ');
+            Arrays.fill(frame[row], ' ');
+        }
+    }
+
+    public int getRows() {
+        return numLines;
+    }
+
+    public int getCols() {
+        return numCols;
+    }
+
+    /**
+     * Replace the whole next frame. Newline starts the next row, missing rows are blank
+     * and text beyond the last column is cut off.
+     */
+    public void setFrame(CharSequence text) {
+        int row = 0;
+        int col = 0;
+        for (int i = 0; i < text.length() && row < numLines; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                Arrays.fill(frame[row], col, numCols, ' ');
+                row++;
+                col = 0;
+            } else if (col < numCols) {
+                frame[row][col++] = c;
+            }
+        }
+        for (; row < numLines; row++) {
+            Arrays.fill(frame[row], col, numCols, ' ');
+            col = 0;
+        }
+    }
+
+    /**
+     * Replace one row of the next frame, padded with blanks
+     */
+    public void setLine(int row, CharSequence text) {
+        int length = Math.min(text.length(), numCols);
+        for (int col = 0; col < length; col++) {
+            frame[row][col] = text.charAt(col);
+        }
+        Arrays.fill(frame[row], length, numCols, ' ');
+    }
+
+    /**
+     * Overwrite the next frame starting at the given cell, cut off at the end of the row
+     */
+    public void set(int row, int col, CharSequence text) {
+        int length = Math.min(text.length(), numCols - col);
+        for (int i = 0; i < length; i++) {
+            frame[row][col + i] = text.charAt(i);
+        }
+    }
+
+    public void set(int row, int col, char c) {
+        frame[row][col] = c;
+    }
+
+    public char get(int row, int col) {
+        return frame[row][col];
+    }
+
+    /**
+     * @return whether the character is on the glass or in the next frame
+     */
+    boolean shows(char c) {
+        for (int row = 0; row < numLines; row++) {
+            for (int col = 0; col < numCols; col++) {
+                if (glass[row][col] == c || frame[row][col] == c) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of flushes so far
+     */
+    int getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Read what is on the glass back from the display and keep it as the next frame,
+     * e.g. after {@link LcdPlate#attach(int, int, int, int) attaching} to a running plate
+     */
+    public void adopt() throws IOException {
+        byte[] codes = new byte[numCols];
+        for (int row = 0; row < numLines; row++) {
+            lcd.readDdram(colOffset, row, codes, 0, numCols);
+            for (int col = 0; col < numCols; col++) {
+                glass[row][col] = LcdCharset.decode(codes[col]);
+            }
+            System.arraycopy(glass[row], 0, frame[row], 0, numCols);
+        }
+    }
+
+    /**
+     * Forget what is on the glass, the next flush rewrites every cell
+     */
+    public void invalidate() {
+        for (char[] line : glass) {
+            Arrays.fill(line, UNKNOWN);
+        }
+    }
+
+    /**
+     * Set the next frame and send the difference to the display
+     */
+    public void render(CharSequence text) {
+        setFrame(text);
+        flush();
+    }
+
+    /**
+     * Send every cell that differs between the next frame and the glass, all in one batch.
+     *
+     * @return number of characters written
+     */
+    public int flush() {
+        flushes++;
+        int written = 0;
+        lcd.beginBatch();
+        for (int row = 0; row < numLines; row++) {
+            char[] next = frame[row];
+            char[] current = glass[row];
+            int col = 0;
+            while (col < numCols) {
+                if (next[col] == current[col]) {
+                    col++;
+                    continue;
+                }
+                // extend the run as long as the next change is closer than a jump
+                int start = col;
+                int end = col + 1;
+                int scan = end;
+                while (scan < numCols) {
+                    if (next[scan] != current[scan]) {
+                        end = scan + 1;
+                    } else if (scan - end >= JUMP_COST) {
+                        break;
+                    }
+                    scan++;
+                }
+                lcd.setCursor(colOffset + start, row);
+                lcd.write(next, start, end - start);
+                System.arraycopy(next, start, current, start, end - start);
+                written += end - start;
+                col = end;
+            }
+        }
+        lcd.endBatch();
+        return written;
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.meistermeier.lcd;
+
+/**
+ * Maps any number of custom 5x8 glyphs onto the 8 CGRAM slots of the display on demand.
+ * <p>
+ * {@link #get(byte[])} returns the character showing a glyph, uploading it first if it
+ * is not resident. When all slots are taken, the least recently used one is replaced,
+ * but never a slot that is on the glass or in the next frame of the given
+ * {@link LcdFrameBuffer}, nor one handed out since its last flush (the caller may not
+ * have set it yet): redefining it would change characters already drawn. If every slot
+ * is protected, '?' is returned instead of a slot.
+ */
+public class LcdGlyphCache {
+
+    private static final int SLOTS = 8;
+
+    private final LcdPlate lcd;
+    private final LcdFrameBuffer screen;
+    private final int firstSlot;
+    private final long[] glyphs = new long[SLOTS];
+    private final boolean[] resident = new boolean[SLOTS];
+    private final long[] lastUsed = new long[SLOTS];
+    // slots handed out since the flush counted in pinnedFlush
+    private final boolean[] pinned = new boolean[SLOTS];
+    private int pinnedFlush;
+    private long clock;
+    private int uploads;
+
+    public LcdGlyphCache(LcdPlate lcd, LcdFrameBuffer screen) {
+        this(lcd, screen, 0);
+    }
+
+    /**
+     * @param firstSlot lowest slot to use, slots below are left alone (e.g. for fixed glyphs)
+     */
+    public LcdGlyphCache(LcdPlate lcd, LcdFrameBuffer screen, int firstSlot) {
+        if (firstSlot < 0 || firstSlot >= SLOTS) {
+            throw new IllegalArgumentException("no slots left above " + firstSlot);
+        }
+        this.lcd = lcd;
+        this.screen = screen;
+        this.firstSlot = firstSlot;
+    }
+
+    /**
+     * @param bitmap up to 8 rows from top to bottom, the lower 5 bits are the pixels
+     * @return character (0-7) showing the glyph, or '?' if every slot is visible or was
+     * handed out since the last flush
+     */
+    public char get(byte[] bitmap) {
+        long glyph = pack(bitmap);
+        clock++;
+        if (pinnedFlush != screen.getFlushes()) {
+            // glyphs handed out before the flush are on the glass now, if they were used
+            pinnedFlush = screen.getFlushes();
+            for (int slot = 0; slot < SLOTS; slot++) {
+                pinned[slot] = false;
+            }
+        }
+        for (int slot = firstSlot; slot < SLOTS; slot++) {
+            if (resident[slot] && glyphs[slot] == glyph) {
+                lastUsed[slot] = clock;
+                pinned[slot] = true;
+                return (char) slot;
+            }
+        }
+        int victim = -1;
+        for (int slot = firstSlot; slot < SLOTS && victim < 0; slot++) {
+            if (!resident[slot]) {
+                victim = slot;
+            }
+        }
+        if (victim < 0) {
+            for (int slot = firstSlot; slot < SLOTS; slot++) {
+                if ((victim < 0 || lastUsed[slot] < lastUsed[victim]) && !pinned[slot]
+                        && !screen.shows((char) slot)) {
+                    victim = slot;
+                }
+            }
+        }
+        if (victim < 0) {
+            return (char) LcdCharset.FALLBACK;
+        }
+        lcd.createChar(victim, bitmap);
+        glyphs[victim] = glyph;
+        resident[victim] = true;
+        lastUsed[victim] = clock;
+        pinned[victim] = true;
+        uploads++;
+        return (char) victim;
+    }
+
+    /**
+     * @return number of glyphs uploaded to CGRAM so far
+     */
+    public int getUploads() {
+        return uploads;
+    }
+
+    /**
+     * Forget which glyphs are resident, e.g. after CGRAM was written directly
+     */
+    public void invalidate() {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            resident[slot] = false;
+        }
+    }
+
+    // 8 rows of 5 pixels fit into one long
+    private static long pack(byte[] bitmap) {
+        long glyph = 0;
+        for (int row = 0; row < SLOTS; row++) {
+            glyph = glyph << 8 | (row < bitmap.length ? bitmap[row] & 0b11111 : 0);
+        }
+        return glyph;
+    }
+}
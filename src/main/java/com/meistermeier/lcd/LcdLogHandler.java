@@ -0,0 +1,55 @@
+package com.meistermeier.lcd;
+
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * java.util.logging handler that tails the log on the plate.
+ * <p>
+ * Publishing never blocks on the bus: records go to a {@link LcdLogSink}, usually a
+ * started {@link LcdLogTail}. Without a formatter the raw message is shown, so nothing
+ * is allocated per record; set a formatter to get parameters filled in.
+ */
+public class LcdLogHandler extends Handler {
+
+    private final LcdLogSink sink;
+
+    public LcdLogHandler(LcdLogSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        String message = getFormatter() == null ? record.getMessage() : getFormatter().formatMessage(record);
+        sink.append(letter(record.getLevel()), message == null ? "" : message);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        if (sink instanceof LcdLogTail) {
+            ((LcdLogTail) sink).stop();
+        }
+    }
+
+    static char letter(Level level) {
+        int value = level.intValue();
+        if (value >= Level.SEVERE.intValue()) {
+            return 'E';
+        }
+        if (value >= Level.WARNING.intValue()) {
+            return 'W';
+        }
+        if (value >= Level.INFO.intValue()) {
+            return 'I';
+        }
+        return 'D';
+    }
+}
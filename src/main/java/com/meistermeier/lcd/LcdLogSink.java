@@ -0,0 +1,16 @@
+package com.meistermeier.lcd;
+
+/**
+ * Target for log lines shown on the plate, for hooking up logging frameworks other than
+ * java.util.logging (see {@link LcdLogHandler}).
+ */
+public interface LcdLogSink {
+
+    /**
+     * Queue a line without blocking. The characters are copied before returning.
+     *
+     * @param level one letter for the severity, e.g. 'E' or 'I'
+     * @return false if the line was dropped because the queue is full
+     */
+    boolean append(char level, CharSequence message);
+}
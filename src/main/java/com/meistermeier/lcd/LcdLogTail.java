@@ -0,0 +1,187 @@
+package com.meistermeier.lcd;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Shows the newest log lines, one per row with the newest at the bottom.
+ * <p>
+ * {@link #append(char, CharSequence)} copies the line into a preallocated slot of a
+ * bounded lock-free queue and returns at once, without allocating; when the queue is
+ * full the line is dropped. A display thread drains the queue at a capped frame rate and
+ * sends only changed characters. Lines pushed out by newer ones before they made it on
+ * screen are dropped too; {@link #getDropped()} counts both. Lines longer than the
+ * display scroll, pausing at both ends.
+ * <p>
+ * The frame rate has to be configured before {@link #start()}. The tail owns the plate
+ * while it is running.
+ */
+public class LcdLogTail implements LcdLogSink {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    // longer lines are cut off
+    private static final int MAX_LENGTH = 80;
+    // frames the start and the end of a long line stay still
+    private static final int PAUSE_FRAMES = 5;
+
+    private final LcdFrameBuffer screen;
+    private final int numLines;
+    private final int numCols;
+
+    // queue slot i holds the line at position p when sequence[i] == p + 1,
+    // and is free for position p when sequence[i] == p
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+    private final char[] texts;
+    private final int[] lengths;
+    private final AtomicLong overflows = new AtomicLong();
+    private long head;
+    private volatile long superseded;
+
+    // lines on screen, index 0 is the oldest
+    private final char[][] lines;
+    private final int[] lineLengths;
+    private int scrollFrame;
+
+    private long frameMillis = 200;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> drawing;
+
+    public LcdLogTail(LcdPlate lcd, int rows, int cols) {
+        this(new LcdFrameBuffer(lcd, rows, cols), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of queued lines, rounded up to a power of two
+     */
+    public LcdLogTail(LcdFrameBuffer screen, int capacity) {
+        this.screen = screen;
+        this.numLines = screen.getRows();
+        this.numCols = screen.getCols();
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+        texts = new char[size * MAX_LENGTH];
+        lengths = new int[size];
+        lines = new char[numLines][MAX_LENGTH];
+        lineLengths = new int[numLines];
+    }
+
+    /**
+     * @param frameMillis minimum time between two updates of the display
+     */
+    public void setFrameMillis(long frameMillis) {
+        this.frameMillis = frameMillis;
+    }
+
+    /**
+     * @return number of lines that never made it on screen
+     */
+    public long getDropped() {
+        return overflows.get() + superseded;
+    }
+
+    @Override
+    public boolean append(char level, CharSequence message) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long available = sequence.get(index);
+            if (available < position) {
+                // the display thread hasn't taken the oldest line yet
+                overflows.incrementAndGet();
+                return false;
+            }
+            if (available == position && tail.compareAndSet(position, position + 1)) {
+                break;
+            }
+        }
+        int offset = index * MAX_LENGTH;
+        texts[offset] = level;
+        texts[offset + 1] = ' ';
+        int length = Math.min(message.length() + 2, MAX_LENGTH);
+        for (int i = 2; i < length; i++) {
+            char c = message.charAt(i - 2);
+            texts[offset + i] = c < ' ' ? ' ' : c;
+        }
+        lengths[index] = length;
+        sequence.set(index, position + 1);
+        return true;
+    }
+
+    public synchronized void start() {
+        if (drawing != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lcd-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        drawing = executor.scheduleWithFixedDelay(this::draw, 0, frameMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (drawing == null) {
+            return;
+        }
+        drawing.cancel(false);
+        executor.shutdown();
+        drawing = null;
+        executor = null;
+    }
+
+    /**
+     * Take the queued lines and update the display. Called by the display thread, or
+     * directly when not {@link #start() started}.
+     *
+     * @return number of characters written
+     */
+    public synchronized int draw() {
+        int taken = 0;
+        while (true) {
+            int index = (int) head & mask;
+            if (sequence.get(index) != head + 1) {
+                break;
+            }
+            // scroll the lines up by one, reusing the oldest array for the new line
+            char[] line = lines[0];
+            System.arraycopy(lines, 1, lines, 0, numLines - 1);
+            System.arraycopy(lineLengths, 1, lineLengths, 0, numLines - 1);
+            System.arraycopy(texts, index * MAX_LENGTH, line, 0, lengths[index]);
+            lines[numLines - 1] = line;
+            lineLengths[numLines - 1] = lengths[index];
+            sequence.set(index, head + mask + 1);
+            head++;
+            taken++;
+        }
+        if (taken > numLines) {
+            superseded += taken - numLines;
+        }
+        if (taken > 0) {
+            scrollFrame = 0;
+        }
+        int longest = 0;
+        for (int row = 0; row < numLines; row++) {
+            int overhang = Math.max(0, lineLengths[row] - numCols);
+            longest = Math.max(longest, overhang);
+            int shift = Math.max(0, Math.min(overhang, scrollFrame - PAUSE_FRAMES));
+            for (int col = 0; col < numCols; col++) {
+                int index = shift + col;
+                screen.set(row, col, index < lineLengths[row] ? lines[row][index] : ' ');
+            }
+        }
+        scrollFrame = longest == 0 || scrollFrame >= longest + 2 * PAUSE_FRAMES ? 0 : scrollFrame + 1;
+        return screen.flush();
+    }
+}
@@ -0,0 +1,225 @@
+package com.meistermeier.lcd;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scrolls text longer than the display from right to left, pausing at both ends.
+ * <p>
+ * On displays with up to two rows where every row scrolls (or is blank), the text is
+ * loaded into the 40 DDRAM columns of each row once and moved with the display shift
+ * command, one instruction per step. Lines longer than 40 characters are refilled one
+ * character per step in the columns just outside the visible window. Returning to the
+ * start is a single home instruction, unless refilling overwrote the beginning.
+ * <p>
+ * The display shift moves all rows at once, so as soon as a row has to stay still, or
+ * on four row displays (whose rows 2 and 3 continue rows 0 and 1 in DDRAM), only the
+ * scrolling rows are rewritten each step instead.
+ * <p>
+ * The marquee owns the plate while it is running. Timing has to be configured before
+ * {@link #start()}.
+ */
+public class LcdMarquee {
+
+    private static final int DDRAM_COLUMNS = 40;
+
+    private final LcdPlate lcd;
+    private final int numLines;
+    private final int numCols;
+    private final String[] lines;
+    private final boolean[] scrolling;
+    private final char[] window;
+    private long stepMillis = 300;
+    private long pauseMillis = 1500;
+    private ScheduledExecutorService executor;
+
+    private boolean dirty = true;
+    private boolean hardware;
+    // first visible text column
+    private int position;
+    private int end;
+    // at least one line no longer has its start in DDRAM
+    private boolean refilled;
+
+    public LcdMarquee(LcdPlate lcd, int rows, int cols) {
+        this.lcd = lcd;
+        this.numLines = rows;
+        this.numCols = cols;
+        lines = new String[rows];
+        scrolling = new boolean[rows];
+        window = new char[DDRAM_COLUMNS];
+        Arrays.fill(lines, "");
+    }
+
+    /**
+     * Text to scroll through in a row, restarting the marquee
+     */
+    public synchronized void setLine(int row, CharSequence text) {
+        lines[row] = text.toString();
+        scrolling[row] = true;
+        dirty = true;
+    }
+
+    /**
+     * Text to keep still in a row, cut off at the last column. Restarts the marquee.
+     */
+    public synchronized void setStaticLine(int row, CharSequence text) {
+        lines[row] = text.toString();
+        scrolling[row] = false;
+        dirty = true;
+    }
+
+    /**
+     * @param stepMillis time between two steps of one column
+     */
+    public void setStepMillis(long stepMillis) {
+        this.stepMillis = stepMillis;
+    }
+
+    /**
+     * @param pauseMillis how long the start and the end of the text stay on screen
+     */
+    public void setPauseMillis(long pauseMillis) {
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * @return whether the text is moved by display shifts rather than rewritten
+     */
+    public synchronized boolean isHardwareScrolling() {
+        return hardware;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lcd-marquee");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::tick);
+    }
+
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    private synchronized void tick() {
+        if (executor == null) {
+            return;
+        }
+        executor.schedule(this::tick, step(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Advance the marquee by one column, or restart it once the end was shown.
+     * Called by the marquee thread, or directly when not {@link #start() started}.
+     *
+     * @return milliseconds until the next step is due
+     */
+    public synchronized long step() {
+        if (dirty) {
+            load();
+            return pauseMillis;
+        }
+        if (position >= end) {
+            if (end > 0) {
+                restart();
+            }
+            return pauseMillis;
+        }
+        lcd.beginBatch();
+        if (hardware) {
+            refill(position + numCols);
+            lcd.scrollDisplayLeft();
+        }
+        position++;
+        if (!hardware) {
+            for (int row = 0; row < numLines; row++) {
+                if (scrolling[row]) {
+                    show(row, position, numCols);
+                }
+            }
+        }
+        lcd.endBatch();
+        return position >= end ? pauseMillis : stepMillis;
+    }
+
+    // Write everything from scratch and start at the first column.
+    private void load() {
+        dirty = false;
+        hardware = numLines <= 2;
+        int longest = 0;
+        for (int row = 0; row < numLines; row++) {
+            if (scrolling[row]) {
+                longest = Math.max(longest, lines[row].length());
+            } else if (!lines[row].trim().isEmpty()) {
+                hardware = false;
+            }
+        }
+        end = Math.max(0, longest - numCols);
+        position = 0;
+        refilled = false;
+        lcd.home(); // no display shift
+        lcd.beginBatch();
+        for (int row = 0; row < numLines; row++) {
+            show(row, 0, hardware ? DDRAM_COLUMNS : numCols);
+        }
+        lcd.endBatch();
+    }
+
+    private void restart() {
+        if (refilled) {
+            load();
+            return;
+        }
+        position = 0;
+        if (hardware) {
+            lcd.home();
+            return;
+        }
+        lcd.beginBatch();
+        for (int row = 0; row < numLines; row++) {
+            if (scrolling[row]) {
+                show(row, 0, numCols);
+            }
+        }
+        lcd.endBatch();
+    }
+
+    // Put the text column that is about to scroll into view into its DDRAM column.
+    private void refill(int column) {
+        if (column < DDRAM_COLUMNS) {
+            return;
+        }
+        refilled = true;
+        for (int row = 0; row < numLines; row++) {
+            String text = lines[row];
+            lcd.setCursor(column % DDRAM_COLUMNS, row);
+            if (column < text.length()) {
+                lcd.write(text, column, column + 1);
+            } else {
+                lcd.write(" ");
+            }
+        }
+    }
+
+    // Write length columns of a row starting at the given text column, padded with blanks.
+    private void show(int row, int column, int length) {
+        String text = lines[row];
+        for (int i = 0; i < length; i++) {
+            int index = column + i;
+            window[i] = index < text.length() ? text.charAt(index) : ' ';
+        }
+        lcd.setCursor(0, row);
+        lcd.write(window, 0, length);
+    }
+}
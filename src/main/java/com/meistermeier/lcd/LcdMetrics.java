@@ -0,0 +1,273 @@
+package com.meistermeier.lcd;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the bus traffic of one {@link LcdPlate}.
+ * <p>
+ * Only plates created with metrics pay for them; without, the driver skips every
+ * recording call. Read them pull-style through {@link #snapshot()} or expose them via
+ * JMX with {@link #register(String)}.
+ */
+public class LcdMetrics implements LcdMetricsMXBean {
+
+    // Commands by their highest set bit
+    private static final String[] COMMAND_TYPES = {"CLEAR", "HOME", "ENTRY_MODE", "DISPLAY_CONTROL",
+            "SHIFT", "FUNCTION_SET", "CGRAM_ADDRESS", "DDRAM_ADDRESS"};
+
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder ioErrors = new LongAdder();
+    private final LongAdder pollIterations = new LongAdder();
+    private final LongAdder pollTimeouts = new LongAdder();
+    private final LongAdder[] commands = new LongAdder[COMMAND_TYPES.length];
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram pollLatency = new LatencyHistogram();
+
+    public LcdMetrics() {
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Register as MXBean {@code com.meistermeier.lcd:type=LcdPlate,name=<name>}
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.meistermeier.lcd:type=LcdPlate,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    void write(int bytes, long nanos) {
+        bytesWritten.add(bytes);
+        writeLatency.record(nanos);
+    }
+
+    void read(int bytes, long nanos) {
+        bytesRead.add(bytes);
+        readLatency.record(nanos);
+    }
+
+    void ioError() {
+        ioErrors.increment();
+    }
+
+    void command(int value) {
+        if (value > 0) {
+            commands[31 - Integer.numberOfLeadingZeros(value & 0xFF)].increment();
+        }
+    }
+
+    void poll(int iterations, long nanos) {
+        pollIterations.add(iterations);
+        pollLatency.record(nanos);
+    }
+
+    void pollTimeout() {
+        pollTimeouts.increment();
+    }
+
+    @Override
+    public long getWrites() {
+        return writeLatency.getCount();
+    }
+
+    @Override
+    public long getReads() {
+        return readLatency.getCount();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getIoErrors() {
+        return ioErrors.sum();
+    }
+
+    @Override
+    public long getPolls() {
+        return pollLatency.getCount();
+    }
+
+    @Override
+    public long getPollIterations() {
+        return pollIterations.sum();
+    }
+
+    @Override
+    public long getPollTimeouts() {
+        return pollTimeouts.sum();
+    }
+
+    @Override
+    public long getPollNanos() {
+        return pollLatency.getTotalNanos();
+    }
+
+    @Override
+    public long getWriteLatencyP50Nanos() {
+        return writeLatency.quantileNanos(0.5);
+    }
+
+    @Override
+    public long getWriteLatencyP99Nanos() {
+        return writeLatency.quantileNanos(0.99);
+    }
+
+    @Override
+    public long getReadLatencyP99Nanos() {
+        return readLatency.quantileNanos(0.99);
+    }
+
+    @Override
+    public long getPollLatencyP99Nanos() {
+        return pollLatency.quantileNanos(0.99);
+    }
+
+    @Override
+    public Map<String, Long> getCommandCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (int i = 0; i < commands.length; i++) {
+            counts.put(COMMAND_TYPES[i], commands[i].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public void reset() {
+        bytesWritten.reset();
+        bytesRead.reset();
+        ioErrors.reset();
+        pollIterations.reset();
+        pollTimeouts.reset();
+        for (LongAdder command : commands) {
+            command.reset();
+        }
+        writeLatency.reset();
+        readLatency.reset();
+        pollLatency.reset();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Values of all counters at one point in time
+     */
+    public static class Snapshot {
+
+        private final long writes;
+        private final long reads;
+        private final long bytesWritten;
+        private final long bytesRead;
+        private final long ioErrors;
+        private final long polls;
+        private final long pollIterations;
+        private final long pollTimeouts;
+        private final long pollNanos;
+        private final long writeLatencyP50Nanos;
+        private final long writeLatencyP99Nanos;
+        private final long readLatencyP99Nanos;
+        private final long pollLatencyP99Nanos;
+        private final Map<String, Long> commandCounts;
+
+        private Snapshot(LcdMetrics metrics) {
+            writes = metrics.getWrites();
+            reads = metrics.getReads();
+            bytesWritten = metrics.getBytesWritten();
+            bytesRead = metrics.getBytesRead();
+            ioErrors = metrics.getIoErrors();
+            polls = metrics.getPolls();
+            pollIterations = metrics.getPollIterations();
+            pollTimeouts = metrics.getPollTimeouts();
+            pollNanos = metrics.getPollNanos();
+            writeLatencyP50Nanos = metrics.getWriteLatencyP50Nanos();
+            writeLatencyP99Nanos = metrics.getWriteLatencyP99Nanos();
+            readLatencyP99Nanos = metrics.getReadLatencyP99Nanos();
+            pollLatencyP99Nanos = metrics.getPollLatencyP99Nanos();
+            commandCounts = Collections.unmodifiableMap(metrics.getCommandCounts());
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        public long getReads() {
+            return reads;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getIoErrors() {
+            return ioErrors;
+        }
+
+        public long getPolls() {
+            return polls;
+        }
+
+        public long getPollIterations() {
+            return pollIterations;
+        }
+
+        public long getPollTimeouts() {
+            return pollTimeouts;
+        }
+
+        public long getPollNanos() {
+            return pollNanos;
+        }
+
+        public long getWriteLatencyP50Nanos() {
+            return writeLatencyP50Nanos;
+        }
+
+        public long getWriteLatencyP99Nanos() {
+            return writeLatencyP99Nanos;
+        }
+
+        public long getReadLatencyP99Nanos() {
+            return readLatencyP99Nanos;
+        }
+
+        public long getPollLatencyP99Nanos() {
+            return pollLatencyP99Nanos;
+        }
+
+        public Map<String, Long> getCommandCounts() {
+            return commandCounts;
+        }
+
+        @Override
+        public String toString() {
+            return "writes=" + writes + " (" + bytesWritten + " bytes, p50 " + writeLatencyP50Nanos
+                    + " ns, p99 " + writeLatencyP99Nanos + " ns), reads=" + reads + " (" + bytesRead
+                    + " bytes, p99 " + readLatencyP99Nanos + " ns), polls=" + polls + " (" + pollIterations
+                    + " iterations, " + pollNanos + " ns, " + pollTimeouts + " timeouts), ioErrors=" + ioErrors
+                    + ", commands=" + commandCounts;
+        }
+    }
+}
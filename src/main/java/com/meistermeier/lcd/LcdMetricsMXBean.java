@@ -0,0 +1,41 @@
+package com.meistermeier.lcd;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link LcdMetrics}. Latencies are upper bounds of power-of-two buckets.
+ * As an MXBean the command counts reach generic JMX clients as open type TabularData.
+ */
+public interface LcdMetricsMXBean {
+
+    long getWrites();
+
+    long getReads();
+
+    long getBytesWritten();
+
+    long getBytesRead();
+
+    long getIoErrors();
+
+    long getPolls();
+
+    long getPollIterations();
+
+    long getPollTimeouts();
+
+    long getPollNanos();
+
+    long getWriteLatencyP50Nanos();
+
+    long getWriteLatencyP99Nanos();
+
+    long getReadLatencyP99Nanos();
+
+    long getPollLatencyP99Nanos();
+
+    Map<String, Long> getCommandCounts();
+
+    void reset();
+
+}
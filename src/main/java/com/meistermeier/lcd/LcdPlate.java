@@ -5,7 +5,8 @@ import com.pi4j.io.i2c.I2CDevice;
 import com.pi4j.io.i2c.I2CFactory;
 
 import java.io.IOException;
-import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 public class LcdPlate {
 
@@ -13,9 +14,20 @@ public class LcdPlate {
     private static final int MCP23017_IOCON_BANK0 = 0x0A;// IOCON when Bank 0 active
     private static final int MCP23017_IOCON_BANK1 = 0x15; // IOCON when Bank 1 active
     // These are register addresses when in Bank 1 only:
+    private static final int MCP23017_IODIRA = 0x00;
+    private static final int MCP23017_IPOLA = 0x01;
+    private static final int MCP23017_GPINTENA = 0x02;
+    private static final int MCP23017_INTCONA = 0x04;
+    private static final int MCP23017_GPPUA = 0x06;
+    private static final int MCP23017_INTCAPA = 0x08;
     private static final int MCP23017_GPIOA = 0x09;
+    private static final int MCP23017_OLATA = 0x0A;
     private static final int MCP23017_IODIRB = 0x10;
     private static final int MCP23017_GPIOB = 0x19;
+    private static final int MCP23017_OLATB = 0x1A;
+
+    // IOCON while running: Bank 1, sequential operation disabled
+    private static final int MCP23017_IOCON_RUNNING = 0b10100000;
 
     // LCD Commands
     private static final int LCD_CLEARDISPLAY = 0x01;
@@ -47,33 +59,33 @@ public class LcdPlate {
     private static final int LCD_MOVERIGHT = 0x04;
     private static final int LCD_MOVELEFT = 0x00;
 
-    // Line addresses for up to 4 line displays.  Maps line number to DDRAM address for line.
-    private static final Map<Integer, Integer> LINE_ADDRESSES = new HashMap<>(3);
-
-    static {
-        // { 1: 0xC0, 2: 0x94, 3: 0xD4 }
-        LINE_ADDRESSES.put(1, 0xC0);
-        LINE_ADDRESSES.put(2, 0x94);
-        LINE_ADDRESSES.put(3, 0xD4);
-    }
+    // Execution time of clear and home according to the HD44780 datasheet
+    private static final long SLOW_INSTRUCTION_NANOS = 1_520_000;
+    private static final long DEFAULT_POLL_TIMEOUT_MILLIS = 100;
 
     // Truncation constants for message function truncate parameter.
     private static final int NO_TRUNCATE = 0;
     private static final int TRUNCATE = 1;
     private static final int TRUNCATE_ELLIPSIS = 2;
 
-    // The LCD data pins (D4-D7) connect to MCP pins 12-9 (PORTB4-1), in
-    // that order.  Because this sequence is 'reversed,' a direct shift
-    // won't work.  This table remaps 4-bit data values to MCP PORTB
-    // outputs, incorporating both the reverse and shift.
-    private static final int[] FLIP = {0b00000000, 0b00010000, 0b00001000, 0b00011000,
-            0b00000100, 0b00010100, 0b00001100, 0b00011100,
-            0b00000010, 0b00010010, 0b00001010, 0b00011010,
-            0b00000110, 0b00010110, 0b00001110, 0b00011110};
-
-    private static final int[] ROW_OFFSETS = new int[]{0x00, 0x40, 0x14, 0x54};
+    private static final String ELLIPSIS = "...";
 
     private final I2CDevice lcdDevice;
+    private final LcdTransactionPlanner planner;
+    private final RegisterShadow registers;
+    // null when metrics are disabled
+    private final LcdMetrics metrics;
+    private final byte[] pollBuffer = new byte[3];
+    private BusyWait busyWait = BusyWait.POLL;
+    private BusyWait lastBusyWait;
+    private long pollTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_POLL_TIMEOUT_MILLIS);
+    // clear or home still executing, 0 if none
+    private int slowInstruction;
+    private long slowInstructionIssued;
+    private IOException error;
+    // measured execution time of clear and home
+    private final long[] calibratedNanos = new long[2];
+    private int batchDepth;
     private int portA = 0;
     private int portB = 0;
 
@@ -81,19 +93,84 @@ public class LcdPlate {
     private int displayShift = (LCD_CURSORMOVE | LCD_MOVERIGHT);
     private int displayMode = (LCD_ENTRYLEFT | LCD_ENTRYSHIFTDECREMENT);
     private int displayControl = (LCD_DISPLAYON | LCD_CURSOROFF | LCD_BLINKOFF);
+    // DDRAM address the next character goes to
+    private int cursorAddress;
     private int currLine;
     private int numLines;
     private int numCols;
+    private boolean attached;
 
 
     public LcdPlate(int busNumber, int deviceAddress, int rows, int cols) {
-        lcdDevice = connectToLcdDevice(busNumber, deviceAddress);
+        this(connectToLcdDevice(busNumber, deviceAddress), rows, cols);
+    }
+
+    /**
+     * @param metrics where to record bus traffic, commands and polling, null for none
+     */
+    public LcdPlate(int busNumber, int deviceAddress, int rows, int cols, LcdMetrics metrics) {
+        this(connectToLcdDevice(busNumber, deviceAddress), rows, cols, metrics);
+    }
+
+    /**
+     * Drive the plate through any {@link I2CDevice}, e.g. the {@link LcdPlateEmulator}
+     * or a wrapper around the real bus device.
+     */
+    public LcdPlate(I2CDevice lcdDevice, int rows, int cols) {
+        this(lcdDevice, rows, cols, null);
+    }
+
+    /**
+     * @param metrics where to record bus traffic, commands and polling, null for none
+     */
+    public LcdPlate(I2CDevice lcdDevice, int rows, int cols, LcdMetrics metrics) {
+        this(lcdDevice, rows, cols, metrics, false);
+    }
+
+    private LcdPlate(I2CDevice lcdDevice, int rows, int cols, LcdMetrics metrics, boolean attach) {
+        this.metrics = metrics;
+        this.lcdDevice = metrics == null ? lcdDevice : new MeteredI2CDevice(lcdDevice, metrics);
+        registers = new RegisterShadow(this.lcdDevice);
+        planner = new LcdTransactionPlanner(this.lcdDevice, MCP23017_GPIOB, registers);
         numCols = cols;
         numLines = rows;
-        initializeConnection();
+        if (attach) {
+            attached = attachConnection();
+        }
+        if (!attached) {
+            initializeConnection();
+        }
     }
 
-    private I2CDevice connectToLcdDevice(int busNumber, int deviceAddress) {
+    /**
+     * Take over a plate that is still initialized, e.g. by a previous run of the
+     * application, without resetting or clearing it, so its content stays visible.
+     * Falls back to a full initialization if the port expander isn't configured the way
+     * this driver leaves it (e.g. after a power cycle), see {@link #isAttached()}.
+     * <p>
+     * The HD44780 can't report its modes, so display control and entry mode are set to
+     * the defaults again (display on, no cursor, left to right). A display shift is kept.
+     */
+    public static LcdPlate attach(int busNumber, int deviceAddress, int rows, int cols) {
+        return attach(connectToLcdDevice(busNumber, deviceAddress), rows, cols, null);
+    }
+
+    /**
+     * @param metrics where to record bus traffic, commands and polling, null for none
+     * @see #attach(int, int, int, int)
+     */
+    public static LcdPlate attach(I2CDevice lcdDevice, int rows, int cols, LcdMetrics metrics) {
+        return new LcdPlate(lcdDevice, rows, cols, metrics, true);
+    }
+
+    /**
+     * @return whether the plate was taken over as it was instead of being initialized
+     */
+    public boolean isAttached() {
+        return attached;
+    }
+
+    private static I2CDevice connectToLcdDevice(int busNumber, int deviceAddress) {
         try {
             I2CBus i2cBus = I2CFactory.getInstance(busNumber);
             return i2cBus.getDevice(deviceAddress);
@@ -133,8 +210,9 @@ public class LcdPlate {
             };
 
             lcdDevice.write(0, buffer, 0, buffer.length);
+            registers.writtenBank0(buffer, buffer.length);
 
-            lcdDevice.write(MCP23017_IOCON_BANK0, (byte) 0b10100000);
+            lcdDevice.write(MCP23017_IOCON_BANK0, (byte) MCP23017_IOCON_RUNNING);
 
             writeInternalCommand(0x33); // Init
             writeInternalCommand(0x32); // Init
@@ -144,85 +222,314 @@ public class LcdPlate {
             writeInternalCommand(LCD_ENTRYMODESET | displayMode);
             writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
             writeInternalCommand(LCD_RETURNHOME);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    // Adopt the port expander state left behind by a previous driver, false if it has
+    // none (or another) configuration.
+    private boolean attachConnection() {
+        try {
+            int iodirb = lcdDevice.read(MCP23017_IODIRB);
+            if (lcdDevice.read(MCP23017_IOCON_BANK1) != MCP23017_IOCON_RUNNING
+                    || lcdDevice.read(MCP23017_IODIRA) != 0b00111111
+                    || lcdDevice.read(MCP23017_IPOLA) != 0b00111111
+                    || lcdDevice.read(MCP23017_GPPUA) != 0b00111111
+                    || (iodirb & 0b11100001) != 0) {
+                return false;
+            }
+            portA = lcdDevice.read(MCP23017_OLATA);
+            int olatb = lcdDevice.read(MCP23017_OLATB);
+            registers.written(MCP23017_GPIOA, portA);
+            registers.written(MCP23017_GPIOB, olatb);
+            registers.written(MCP23017_IODIRB, iodirb);
+            registers.written(MCP23017_GPINTENA, lcdDevice.read(MCP23017_GPINTENA));
+            registers.written(MCP23017_INTCONA, lcdDevice.read(MCP23017_INTCONA));
+
+            // Interrupted in the middle of an access maybe: strobe low.
+            portB = olatb & 0b00000001;
+            registers.write(MCP23017_GPIOB, portB);
+            if ((iodirb & 0b00000010) != 0) {
+                // A clear or home may still run. The interface may be out of step, so
+                // its busy flag can't be trusted: wait as long as they take instead.
+                long deadline = System.nanoTime() + SLOW_INSTRUCTION_NANOS;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+            }
+            ddrb = 0;
+            registers.write(MCP23017_IODIRB, ddrb);
+
+            // Resynchronize the 4-bit interface (which leaves DDRAM alone), sent as they
+            // are without polling.
+            int bitMask = portB & 0b00000001;
+            planner.append(bitMask, 0x33);
+            portB = planner.append(bitMask, 0x32);
+            planner.flush();
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
+        }
+        // Neither clear nor home.
+        writeInternalCommand(0x28); // 2 line 5x8 matrix
+        writeInternalCommand(LCD_ENTRYMODESET | displayMode);
+        writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        try {
+            cursorAddress = readAddressCounter();
+        } catch (IOException e) {
+            failed(e);
         }
+        return true;
     }
 
     private void writeInternalCommand(int value) {
         try {
-            pollToClear();
+            waitUntilReady();
 
             int bitMask = portB & 0b00000001;
 
-            byte[] data = out4(bitMask, value);
-            lcdDevice.write(MCP23017_GPIOB, data, 0, 4);
-            portB = data[3];
+            portB = planner.append(bitMask, value);
+            if (metrics != null) {
+                metrics.command(value);
+            }
+            trackCursor(value);
             // If a poll-worthy instruction was issued, reconfigure D7
             //pin as input to indicate need for polling on next call.
             if (value == LCD_CLEARDISPLAY || value == LCD_RETURNHOME) {
-                ddrb |= 0b00000010;
-                lcdDevice.write(MCP23017_IODIRB, (byte) ddrb);
+                planner.flush();
+                slowInstruction = value;
+                slowInstructionIssued = System.nanoTime();
+                if (busyWaitFor(value) == BusyWait.POLL) {
+                    ddrb |= 0b00000010;
+                    registers.write(MCP23017_IODIRB, ddrb);
+                }
+            } else if (batchDepth == 0) {
+                planner.flush();
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
             // not quite everything alright ;)
-            e.printStackTrace();
+            failed(e);
         }
     }
 
     private void writeBitmap(int value) {
         try {
-            pollToClear();
+            waitUntilReady();
 
             int bitMask = portB & 0b00000001;
             bitMask |= 0b10000000;
 
-            byte[] data = out4(bitMask, value);
-            lcdDevice.write(MCP23017_GPIOB, data, 0, 4);
-            portB = data[3];
-        } catch (Exception e) {
+            portB = planner.append(bitMask, value);
+            if (batchDepth == 0) {
+                planner.flush();
+            }
+        } catch (IOException e) {
             // not quite everything alright ;)
-            e.printStackTrace();
+            failed(e);
         }
     }
 
-    public void write(String message) {
+    public void write(CharSequence message) {
+        write(message, 0, message.length());
+    }
+
+    /**
+     * Write the characters from start (inclusive) to end (exclusive) at the cursor
+     */
+    public void write(CharSequence message, int start, int end) {
         try {
-            pollToClear();
+            waitUntilReady();
 
-            int stringValueLength = message.length();
-            int dataLength = 4 * stringValueLength;
+            int bitMask = (portB & 0b00000001) | 0b10000000;
+            for (int i = start; i < end; i++) {
+                portB = planner.append(bitMask, LcdCharset.encode(message.charAt(i)));
+            }
+            advanceCursor(end - start);
+            if (batchDepth == 0) {
+                planner.flush();
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
 
-            byte[] data = new byte[dataLength];
-            int bitMask = portB & 0b00000001;
-            bitMask |= 0b10000000;
+    /**
+     * Write length characters starting at offset at the cursor
+     */
+    public void write(char[] message, int offset, int length) {
+        try {
+            waitUntilReady();
 
-            for (int i = 0; i < stringValueLength; i++) {
-                // Append 4 bytes to list representing PORTB over time.
-                // First the high 4 data bits with strobe (enable) set
-                // and unset, then same with low 4 data bits (strobe 1/0).
-                byte[] bytes = out4(bitMask, message.charAt(i));
-                for (int j = 0; j < 4; j++) {
-                    data[(i * 4) + j] = bytes[j];
-                }
+            int bitMask = (portB & 0b00000001) | 0b10000000;
+            for (int i = offset; i < offset + length; i++) {
+                portB = planner.append(bitMask, LcdCharset.encode(message[i]));
+            }
+            advanceCursor(length);
+            if (batchDepth == 0) {
+                planner.flush();
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    // Follow the address counter through the commands that move it
+    private void trackCursor(int command) {
+        if ((command & LCD_SETDDRAMADDR) != 0) {
+            cursorAddress = command & 0x7F;
+        } else if (command == LCD_CLEARDISPLAY || command == LCD_RETURNHOME) {
+            cursorAddress = 0;
+        } else if ((command & 0xF0) == LCD_CURSORSHIFT && (command & LCD_DISPLAYMOVE) == 0) {
+            cursorAddress = nextAddress(cursorAddress, (command & LCD_MOVERIGHT) != 0 ? 1 : -1);
+        }
+    }
+
+    private void advanceCursor(int characters) {
+        cursorAddress = nextAddress(cursorAddress, (displayMode & LCD_ENTRYLEFT) != 0 ? characters : -characters);
+    }
 
+    // In two line mode DDRAM runs 0x00-0x27, then 0x40-0x67, then wraps around.
+    private static int nextAddress(int address, int steps) {
+        int linear = address >= 0x40 ? address - 0x40 + 40 : address;
+        linear = Math.floorMod(linear + steps, 80);
+        return linear >= 40 ? linear - 40 + 0x40 : linear;
+    }
+
+    /**
+     * Write ROM codes as they are, e.g. text encoded once for many plates
+     */
+    void writeCodes(byte[] codes, int offset, int length) {
+        try {
+            waitUntilReady();
+
+            int bitMask = (portB & 0b00000001) | 0b10000000;
+            for (int i = offset; i < offset + length; i++) {
+                portB = planner.append(bitMask, codes[i]);
             }
+            advanceCursor(length);
+            if (batchDepth == 0) {
+                planner.flush();
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
 
-            // original block:
-            // I2C block data write is limited to 32 bytes max.
-            // If limit reached, write data so far and clear.
-            // Also do this on last byte if not otherwise handled.
-            // java version:
-            // write whole message at once
-            lcdDevice.write(MCP23017_GPIOB, data, 0, dataLength);
-            portB = data[dataLength - 1];
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Start collecting commands and characters instead of sending each call on its own.
+     * Everything up to the matching {@link #endBatch()} goes out in as few block writes as
+     * possible; only a clear or home in between forces the batch to be split for polling.
+     * Batches may be nested.
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Send what was collected since {@link #beginBatch()}
+     */
+    public void endBatch() {
+        if (batchDepth > 0 && --batchDepth == 0) {
+            try {
+                planner.flush();
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+    }
+
+    /**
+     * @param maxTransferSize largest block write to GPIOB in bytes, defaults to the
+     *                        32 bytes SMBus allows
+     */
+    public void setMaxTransferSize(int maxTransferSize) {
+        planner.setMaxTransferSize(maxTransferSize);
+    }
+
+    /**
+     * @param busyWait how to wait for clear and home to complete, polling by default
+     */
+    public void setBusyWait(BusyWait busyWait) {
+        this.busyWait = busyWait;
+    }
+
+    /**
+     * @param pollTimeoutMillis how long polling may take before giving up, see {@link #takeError()}
+     */
+    public void setPollTimeoutMillis(long pollTimeoutMillis) {
+        this.pollTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(pollTimeoutMillis);
+    }
+
+    /**
+     * @return how the driver waited for the LCD the last time it had to, null if it never had to
+     */
+    public BusyWait getLastBusyWait() {
+        return lastBusyWait;
+    }
+
+    // Only clear and home take long enough to need waiting for.
+    private BusyWait busyWaitFor(int instruction) {
+        if (busyWait == BusyWait.CALIBRATED && calibratedNanos[instruction - 1] == 0) {
+            // nothing measured yet, polling calibrates
+            return BusyWait.POLL;
         }
+        return busyWait;
     }
 
+    private void waitUntilReady() throws IOException {
+        try {
+            if ((ddrb & 0b00000010) != 0) {
+                lastBusyWait = BusyWait.POLL;
+                if (!pollToClear()) {
+                    // D7 is an output again, the pending byte still goes out
+                    failed(new IOException("LCD busy flag still set after "
+                            + TimeUnit.NANOSECONDS.toMillis(pollTimeoutNanos) + " ms"));
+                } else if (slowInstruction != 0) {
+                    long measured = System.nanoTime() - slowInstructionIssued;
+                    int index = slowInstruction - 1;
+                    calibratedNanos[index] = Math.max(calibratedNanos[index], measured);
+                }
+            } else if (slowInstruction != 0) {
+                BusyWait used = busyWaitFor(slowInstruction);
+                // polling may end before the instruction did, never wait less than the datasheet says
+                long delay = used == BusyWait.CALIBRATED
+                        ? Math.max(calibratedNanos[slowInstruction - 1], SLOW_INSTRUCTION_NANOS)
+                        : SLOW_INSTRUCTION_NANOS;
+                long remaining;
+                while ((remaining = slowInstructionIssued + delay - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+                lastBusyWait = used;
+            }
+        } finally {
+            slowInstruction = 0;
+        }
+    }
+
+    // Printed as before, and kept for takeError()
+    private void failed(IOException e) {
+        e.printStackTrace();
+        if (error == null) {
+            error = e;
+        }
+    }
 
-    private void pollToClear() throws IOException {
+    /**
+     * Writes don't throw, a failed bus transfer or a busy flag that never cleared is
+     * kept here instead.
+     *
+     * @return the first failure since the last call, null if there was none
+     */
+    public IOException takeError() {
+        IOException e = error;
+        error = null;
+        return e;
+    }
+
+    // false if the busy flag was still set when the poll timeout ran out
+    private boolean pollToClear() throws IOException {
         // The speed of LCD accesses is inherently limited by I2C through the
         // port expander.  A 'well behaved program' is expected to poll the
         // LCD to know that a prior instruction completed.  But the timing of
@@ -237,36 +544,111 @@ public class LcdPlate {
 
         // If pin D7 is in input state, poll LCD busy flag until clear.
         if ((ddrb & 0b00000010) != 0) {
+            planner.flush();
             int lo = (portB & 0b00000001) | 0b01000000;
             int hi = lo | 0b00100000; // E=1 (strobe)
-            lcdDevice.write(MCP23017_GPIOB, (byte) lo);
+            registers.write(MCP23017_GPIOB, lo);
+            // strobes below bypass the shadow
+            registers.forget(MCP23017_GPIOB);
+            long start = System.nanoTime();
+            long deadline = start + pollTimeoutNanos;
+            int iterations = 0;
             while (true) {
-                // Strobe high (enable)
-                lcdDevice.write((byte) hi);
+                iterations++;
+                // Strobe high (enable). GPIOB is addressed explicitly on every
+                // transfer, so reads of other registers from another thread
+                // (button monitors) can't redirect the strobes.
+                lcdDevice.write(MCP23017_GPIOB, (byte) hi);
                 // First nybble contains busy state
-                int aByte = lcdDevice.read();
+                int aByte = lcdDevice.read(MCP23017_GPIOB);
                 // Strobe low, high, low.  Second nybble (A3) is ignored.
-                lcdDevice.write(MCP23017_GPIOB, new byte[]{(byte) lo, (byte) hi, (byte) lo}, 0, 3);
+                pollBuffer[0] = (byte) lo;
+                pollBuffer[1] = (byte) hi;
+                pollBuffer[2] = (byte) lo;
+                lcdDevice.write(MCP23017_GPIOB, pollBuffer, 0, 3);
                 if ((aByte & 0b00000010) == 0) {
+                    if (metrics != null) {
+                        metrics.poll(iterations, System.nanoTime() - start);
+                    }
                     break;
                 }
+                if (System.nanoTime() - deadline > 0) {
+                    // give up, but don't leave D7 as input for every following call
+                    portB = lo;
+                    registers.written(MCP23017_GPIOB, lo);
+                    ddrb &= 0b11111101;
+                    if (metrics != null) {
+                        metrics.poll(iterations, System.nanoTime() - start);
+                        metrics.pollTimeout();
+                    }
+                    registers.write(MCP23017_IODIRB, ddrb);
+                    return false;
+                }
             }
 
             portB = lo;
+            registers.written(MCP23017_GPIOB, lo);
             // Polling complete, change D7 pin to output
             ddrb &= 0b11111101;
-            lcdDevice.write(MCP23017_IODIRB, (byte) ddrb);
+            registers.write(MCP23017_IODIRB, ddrb);
         }
+        return true;
     }
 
-    // Low-level 4-bit interface for LCD output.  This doesn't actually
-    // write data, just returns a byte array of the PORTB state over time.
-    // Can concatenate the output of multiple calls (up to 8) for more
-    // efficient batch write.
-    private byte[] out4(int bitMask, int value) {
-        int hi = bitMask | FLIP[value >> 4];
-        int lo = bitMask | FLIP[value & 0x0F];
-        return new byte[]{(byte) (hi | 0b00100000), (byte) hi, (byte) (lo | 0b00100000), (byte) lo};
+    private int readAddressCounter() throws IOException {
+        waitUntilReady();
+        planner.flush();
+        registers.write(MCP23017_IODIRB, ddrb | 0b00011110);
+        try {
+            return readLcd(false) & 0x7F;
+        } finally {
+            registers.write(MCP23017_IODIRB, ddrb);
+        }
+    }
+
+    /**
+     * Read characters back from the display, leaving the cursor where it was
+     *
+     * @param codes receives the ROM codes
+     */
+    void readDdram(int col, int row, byte[] codes, int offset, int length) throws IOException {
+        int cursor = cursorAddress;
+        setCursor(col, row);
+        waitUntilReady();
+        planner.flush();
+        registers.write(MCP23017_IODIRB, ddrb | 0b00011110);
+        try {
+            for (int i = offset; i < offset + length; i++) {
+                codes[i] = (byte) readLcd(true);
+            }
+        } finally {
+            registers.write(MCP23017_IODIRB, ddrb);
+        }
+        writeInternalCommand(LCD_SETDDRAMADDR | cursor);
+    }
+
+    // Read one byte in two 4-bit halves: busy flag and address counter, or the data at
+    // the address counter, which advances then. D4-D7 have to be inputs.
+    private int readLcd(boolean data) throws IOException {
+        int lo = (portB & 0b00000001) | 0b01000000 | (data ? 0b10000000 : 0);
+        int hi = lo | 0b00100000; // E=1 (strobe)
+        registers.write(MCP23017_GPIOB, lo);
+        registers.forget(MCP23017_GPIOB);
+        lcdDevice.write(MCP23017_GPIOB, (byte) hi);
+        int high = lcdDevice.read(MCP23017_GPIOB);
+        pollBuffer[0] = (byte) lo;
+        pollBuffer[1] = (byte) hi;
+        lcdDevice.write(MCP23017_GPIOB, pollBuffer, 0, 2);
+        int low = lcdDevice.read(MCP23017_GPIOB);
+        lcdDevice.write(MCP23017_GPIOB, (byte) lo);
+        registers.written(MCP23017_GPIOB, lo);
+        portB = lo;
+        return nibble(high) << 4 | nibble(low);
+    }
+
+    // D4-D7 sit reversed on PORTB4-1
+    private static int nibble(int port) {
+        return (port >> 4 & 1) | (port >> 2 & 0b10) | (port & 0b100) | (port << 2 & 0b1000);
     }
 
     public void stop() throws IOException {
@@ -299,7 +681,17 @@ public class LcdPlate {
                 (byte) portB//OLATB
         };
 
-        lcdDevice.write(buffer, 0, buffer.length);
+        lcdDevice.write(0, buffer, 0, buffer.length);
+        // the port expander is back in Bank 0 now
+        registers.invalidate();
+    }
+
+    public int getRows() {
+        return numLines;
+    }
+
+    public int getCols() {
+        return numCols;
     }
 
     public void clear() {
@@ -312,76 +704,89 @@ public class LcdPlate {
 
     public void setCursor(int col, int row) {
 
-        if (row > numLines) {
+        if (row >= numLines) {
             row = numLines - 1;
         } else if (row < 0) {
             row = 0;
         }
-        writeInternalCommand(LCD_SETDDRAMADDR | (col + ROW_OFFSETS[row]));
+        writeInternalCommand(LCD_SETDDRAMADDR | (col + rowAddress(row)));
+    }
+
+    // DDRAM holds two lines of 40 characters at 0x00 and 0x40. Four line displays
+    // continue the first and second line in their third and fourth row.
+    private int rowAddress(int row) {
+        return (row & 1) * 0x40 + (row >> 1) * numCols;
     }
 
     /**
      * Turn the display on (quickly)
      */
     public void display() {
-        displayControl |= LCD_DISPLAYON;
-        writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        setDisplayControl(displayControl | LCD_DISPLAYON);
     }
 
     /**
      * Turn the display off (quickly)
      */
     public void noDisplay() {
-        displayControl &= ~LCD_DISPLAYON;
-        writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        setDisplayControl(displayControl & ~LCD_DISPLAYON);
     }
 
     /**
      * Underline cursor on
      */
     public void cursor() {
-        displayControl |= LCD_CURSORON;
-        writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        setDisplayControl(displayControl | LCD_CURSORON);
     }
 
     /**
      * Underline cursor off
      */
     public void noCursor() {
-        displayControl &= ~LCD_CURSORON;
-        writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        setDisplayControl(displayControl & ~LCD_CURSORON);
     }
 
     /**
      * Toggles the underline cursor On/Off
      */
     public void toggleCursor() {
-        displayControl ^= LCD_CURSORON;
-        writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        setDisplayControl(displayControl ^ LCD_CURSORON);
     }
 
     /**
      * Turn on the blinking cursor
      */
     public void blink() {
-        displayControl |= LCD_BLINKON;
-        writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        setDisplayControl(displayControl | LCD_BLINKON);
     }
 
     /**
      * Turn off the blinking cursor
      */
     public void noBlink() {
-        displayControl &= ~LCD_BLINKON;
-        writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        setDisplayControl(displayControl & ~LCD_BLINKON);
     }
 
     /**
      * Toggles the blinking cursor
      */
     public void toggleBlink() {
-        displayControl ^= LCD_BLINKON;
-        writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        setDisplayControl(displayControl ^ LCD_BLINKON);
+    }
+
+    // Display control and entry mode are only sent when they change.
+    private void setDisplayControl(int control) {
+        if (control != displayControl) {
+            displayControl = control;
+            writeInternalCommand(LCD_DISPLAYCONTROL | displayControl);
+        }
+    }
+
+    private void setDisplayMode(int mode) {
+        if (mode != displayMode) {
+            displayMode = mode;
+            writeInternalCommand(LCD_ENTRYMODESET | displayMode);
+        }
     }
 
     /**
@@ -404,41 +809,79 @@ public class LcdPlate {
      * This is for text that flows left to right
      */
     public void leftToRight() {
-        displayMode |= LCD_ENTRYLEFT;
-        writeInternalCommand(LCD_ENTRYMODESET | displayMode);
+        setDisplayMode(displayMode | LCD_ENTRYLEFT);
     }
 
     /**
      * This is for text that flows right to left
      */
     public void rightToLeft() {
-        displayMode &= ~LCD_ENTRYLEFT;
-        writeInternalCommand(LCD_ENTRYMODESET | displayMode);
+        setDisplayMode(displayMode & ~LCD_ENTRYLEFT);
     }
 
     /**
      * This will 'right justify' text from the cursor
      */
     public void autoscroll() {
-        displayMode |= LCD_ENTRYSHIFTINCREMENT;
-        writeInternalCommand(LCD_ENTRYMODESET | displayMode);
+        setDisplayMode(displayMode | LCD_ENTRYSHIFTINCREMENT);
     }
 
     /**
      * This will 'left justify' text from the cursor
      */
     public void noAutoscroll() {
-        displayMode &= ~LCD_ENTRYSHIFTINCREMENT;
-        writeInternalCommand(LCD_ENTRYMODESET | displayMode);
+        setDisplayMode(displayMode & ~LCD_ENTRYSHIFTINCREMENT);
     }
 
+    /**
+     * Write the first row of a custom character, leaving the cursor where it was
+     */
     public void createChar(int location, int bitmap) {
+        int cursor = cursorAddress;
+        beginBatch();
         writeInternalCommand(LCD_SETCGRAMADDR | ((location & 7) << 3));
         writeBitmap(bitmap);
-        writeInternalCommand(LCD_SETDDRAMADDR);
+        writeInternalCommand(LCD_SETDDRAMADDR | cursor);
+        endBatch();
+    }
+
+    /**
+     * Define a custom character, shown by writing (char) location. The cursor stays where
+     * it was.
+     *
+     * @param location CGRAM slot 0-7
+     * @param bitmap   up to 8 rows from top to bottom, the lower 5 bits are the pixels
+     */
+    public void createChar(int location, byte[] bitmap) {
+        int cursor = cursorAddress;
+        beginBatch();
+        writeInternalCommand(LCD_SETCGRAMADDR | ((location & 7) << 3));
+        for (int row = 0; row < 8; row++) {
+            writeBitmap(row < bitmap.length ? bitmap[row] : 0);
+        }
+        writeInternalCommand(LCD_SETDDRAMADDR | cursor);
+        endBatch();
     }
 
-    public void message(String text) {
+    /**
+     * Rewrite some rows of a custom character, e.g. only the ones that changed. The
+     * cursor stays where it was.
+     *
+     * @param firstRow first row to write, 0 is the top
+     * @param rows     bitmaps of the rows, the lower 5 bits are the pixels
+     */
+    public void updateChar(int location, int firstRow, byte[] rows, int offset, int count) {
+        int cursor = cursorAddress;
+        beginBatch();
+        writeInternalCommand(LCD_SETCGRAMADDR | ((location & 7) << 3) | (firstRow & 7));
+        for (int i = offset; i < offset + count; i++) {
+            writeBitmap(rows[i]);
+        }
+        writeInternalCommand(LCD_SETDDRAMADDR | cursor);
+        endBatch();
+    }
+
+    public void message(CharSequence text) {
         message(text, NO_TRUNCATE);
     }
 
@@ -448,24 +891,31 @@ public class LcdPlate {
      * @param text
      * @param truncate
      */
-    public void message(String text, int truncate) {
-        String[] lines = text.split("\n");//Split at newline(s)
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
-            Integer address = LINE_ADDRESSES.get(i);
-            if (address != null) {
-                writeInternalCommand(address); // set DDRAM address to line
+    public void message(CharSequence text, int truncate) {
+        beginBatch();
+        int length = text.length();
+        int lineStart = 0;
+        for (int i = 0; lineStart < length; i++) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && text.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (i > 0 && i < numLines) {
+                writeInternalCommand(LCD_SETDDRAMADDR | rowAddress(i)); // set DDRAM address to line
             }
             // Handle appropriate truncation if requested.
-            int lineLength = line.length();
+            int lineLength = lineEnd - lineStart;
             if (truncate == TRUNCATE && lineLength > numCols) {
-                write(line.substring(0, numCols));
+                write(text, lineStart, lineStart + numCols);
             } else if (truncate == TRUNCATE_ELLIPSIS && lineLength > numCols) {
-                write(line.substring(0, numCols - 3) + "...");
+                write(text, lineStart, lineStart + numCols - 3);
+                write(ELLIPSIS);
             } else {
-                write(line);
+                write(text, lineStart, lineEnd);
             }
+            lineStart = lineEnd + 1;
         }
+        endBatch();
     }
 
     /**
@@ -475,12 +925,16 @@ public class LcdPlate {
      * @throws Exception
      */
     public void backlight(int color) throws Exception {
+        // pending strobes carry the old blue bit
+        planner.flush();
         int c = ~color;
         portA = (portA & 0b00111111) | ((c & 0b011) << 6);
         portB = (portB & 0b11111110) | ((c & 0b100) >> 2);
-        // Has to be done as two writes because sequential operation is off.
-        lcdDevice.write(MCP23017_GPIOA, (byte) portA);
-        lcdDevice.write(MCP23017_GPIOB, (byte) portB);
+        // Has to be done as two writes because sequential operation is off
+        // (GPIOA and GPIOB aren't adjacent in Bank 1 anyway). Only the ports
+        // that change are written.
+        registers.write(MCP23017_GPIOA, portA);
+        registers.write(MCP23017_GPIOB, portB);
     }
 
     public boolean buttonPressed(Button button) {
@@ -497,10 +951,36 @@ public class LcdPlate {
         return lcdDevice.read(MCP23017_GPIOA) >> b & 1;
     }
 
-    // Read and return bitmask of combined button state
-    // later needed for a function returning button collection
-    private int buttons() throws IOException {
+    /**
+     * Read the state of all buttons at once (one bus transfer)
+     *
+     * @return bitmask of pressed buttons, see {@link Button#getMappedCode()}
+     */
+    public int buttons() throws IOException {
         return lcdDevice.read(MCP23017_GPIOA) & 0b11111;
     }
 
+    /**
+     * Let the port expander raise its INTA line whenever a button changes, instead of
+     * having to poll {@link #buttonPressed(Button)}. See {@link ButtonInterruptMonitor}.
+     */
+    public void enableButtonInterrupts() throws IOException {
+        registers.write(MCP23017_INTCONA, 0); // compare against previous pin state
+        registers.write(MCP23017_GPINTENA, 0b11111);
+    }
+
+    public void disableButtonInterrupts() throws IOException {
+        registers.write(MCP23017_GPINTENA, 0);
+    }
+
+    /**
+     * Read the button state captured when the last interrupt fired. This also clears the
+     * interrupt.
+     *
+     * @return bitmask of pressed buttons, see {@link Button#getMappedCode()}
+     */
+    public int readButtonInterrupt() throws IOException {
+        return lcdDevice.read(MCP23017_INTCAPA) & 0b11111;
+    }
+
 }
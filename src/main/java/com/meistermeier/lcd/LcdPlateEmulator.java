@@ -0,0 +1,546 @@
+package com.meistermeier.lcd;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process emulation of the char LCD plate: a MCP23017 port expander with an HD44780
+ * controller hanging off PORTB, talking the 4-bit protocol.
+ * <p>
+ * Every call counts as one I2C transaction and advances a simulated bus clock according
+ * to the {@link LatencyModel}, so the traffic caused by the driver can be measured
+ * without a physical plate.
+ */
+public class LcdPlateEmulator implements I2CDevice {
+
+    // MCP23017 registers in their BANK=0 layout; BANK=1 addresses are translated to these.
+    private static final int IODIRA = 0x00;
+    private static final int IODIRB = 0x01;
+    private static final int IPOLA = 0x02;
+    private static final int GPINTENA = 0x04;
+    private static final int DEFVALA = 0x06;
+    private static final int INTCONA = 0x08;
+    private static final int IOCON = 0x0A;
+    private static final int IOCON_ALT = 0x0B;
+    private static final int INTFA = 0x0E;
+    private static final int INTFB = 0x0F;
+    private static final int INTCAPA = 0x10;
+    private static final int INTCAPB = 0x11;
+    private static final int GPIOA = 0x12;
+    private static final int GPIOB = 0x13;
+    private static final int OLATA = 0x14;
+    private static final int OLATB = 0x15;
+    private static final int REGISTER_COUNT = 0x16;
+
+    private static final int IOCON_BANK = 0b10000000;
+    private static final int IOCON_SEQOP = 0b00100000;
+
+    // PORTB wiring of the LCD
+    private static final int PIN_RS = 0b10000000;
+    private static final int PIN_RW = 0b01000000;
+    private static final int PIN_E = 0b00100000;
+    private static final int PINS_DATA = 0b00011110;
+
+    // PORTB bits (D4-D7 reversed on PORTB4-1) to a 4-bit value
+    private static final int[] UNFLIP = new int[32];
+    private static final int[] FLIP = {0b00000000, 0b00010000, 0b00001000, 0b00011000,
+            0b00000100, 0b00010100, 0b00001100, 0b00011100,
+            0b00000010, 0b00010010, 0b00001010, 0b00011010,
+            0b00000110, 0b00010110, 0b00001110, 0b00011110};
+
+    static {
+        for (int i = 0; i < FLIP.length; i++) {
+            UNFLIP[FLIP[i]] = i;
+        }
+    }
+
+    // HD44780 execution times
+    private static final long SLOW_INSTRUCTION_NANOS = 1_520_000;
+    private static final long FAST_INSTRUCTION_NANOS = 37_000;
+
+    private final int numLines;
+    private final int numCols;
+    private final LatencyModel latencyModel;
+
+    // MCP23017 state
+    private final int[] registers = new int[REGISTER_COUNT];
+    private int addressPointer;
+    private int buttonInputs;
+
+    // HD44780 state
+    private final byte[] ddram = new byte[0x80];
+    private final byte[] cgram = new byte[0x40];
+    private boolean fourBitMode;
+    private boolean secondNibble;
+    private int highNibble;
+    private boolean lastEnable;
+    private int addressCounter;
+    private boolean cgramSelected;
+    private boolean increment = true;
+    private boolean shiftOnWrite;
+    private int displayOffset;
+    private int displayControl;
+    private long busyUntilSimulated;
+    private long busyUntilReal;
+
+    // bookkeeping
+    private long simulatedNanos;
+    private long transactionStart;
+    private long transactions;
+    private long bytesWritten;
+    private long bytesRead;
+    private long busyViolations;
+
+    public LcdPlateEmulator(int rows, int cols) {
+        this(rows, cols, LatencyModel.i2c(100_000, 0));
+    }
+
+    public LcdPlateEmulator(int rows, int cols, LatencyModel latencyModel) {
+        this.numLines = rows;
+        this.numCols = cols;
+        this.latencyModel = latencyModel;
+        // power-on reset: all pins inputs, BANK=0, sequential operation
+        registers[IODIRA] = 0xFF;
+        registers[IODIRB] = 0xFF;
+        for (int i = 0; i < ddram.length; i++) {
+            ddram[i] = ' ';
+        }
+    }
+
+    // Raw transfers without a register address continue at the current address pointer,
+    // which is how the driver uses them while polling the busy flag.
+
+    @Override
+    public synchronized void write(byte b) {
+        transaction(1, 0);
+        writeRegister(b & 0xFF, 0);
+    }
+
+    @Override
+    public synchronized void write(byte[] buffer, int offset, int size) {
+        transaction(size, 0);
+        for (int i = 0; i < size; i++) {
+            writeRegister(buffer[offset + i] & 0xFF, i);
+        }
+    }
+
+    @Override
+    public synchronized void write(int address, byte b) {
+        addressPointer = address;
+        write(b);
+    }
+
+    @Override
+    public synchronized void write(int address, byte[] buffer, int offset, int size) {
+        addressPointer = address;
+        write(buffer, offset, size);
+    }
+
+    @Override
+    public synchronized int read() {
+        transaction(0, 1);
+        return readRegister();
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int size) {
+        transaction(0, size);
+        for (int i = 0; i < size; i++) {
+            buffer[offset + i] = (byte) readRegister();
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized int read(int address) {
+        addressPointer = address;
+        return read();
+    }
+
+    @Override
+    public synchronized int read(int address, byte[] buffer, int offset, int size) {
+        addressPointer = address;
+        return read(buffer, offset, size);
+    }
+
+    /**
+     * Hold the given button down (pulls its GPIOA pin low)
+     */
+    public synchronized void press(Button button) {
+        int previous = gpioA();
+        buttonInputs |= 1 << button.getMappedCode();
+        buttonsChanged(previous);
+    }
+
+    public synchronized void release(Button button) {
+        int previous = gpioA();
+        buttonInputs &= ~(1 << button.getMappedCode());
+        buttonsChanged(previous);
+    }
+
+    /**
+     * @return whether INTA is asserted
+     */
+    public synchronized boolean isInterruptActive() {
+        return registers[INTFA] != 0;
+    }
+
+    /**
+     * @return interrupt source following the emulated INTA line
+     */
+    public ButtonInterruptSource getInterruptSource() {
+        return this::awaitInterrupt;
+    }
+
+    private synchronized boolean awaitInterrupt(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (registers[INTFA] == 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    private void buttonsChanged(int previous) {
+        int pins = gpioA();
+        int compare = registers[INTCONA];
+        int changed = ((previous ^ pins) & ~compare | (pins ^ registers[DEFVALA]) & compare) & registers[GPINTENA];
+        // INTCAP stays locked until the pending interrupt is cleared
+        if (changed != 0 && registers[INTFA] == 0) {
+            registers[INTFA] = changed;
+            registers[INTCAPA] = pins;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return the characters currently visible in the given row, display shift applied
+     */
+    public synchronized String getVisibleText(int row) {
+        if (row < 0 || row >= numLines) {
+            throw new IndexOutOfBoundsException("row " + row);
+        }
+        // rows 2 and 3 continue rows 0 and 1 behind the visible columns
+        char[] line = new char[numCols];
+        int lineAddress = (row & 1) * 0x40;
+        int start = (row >> 1) * numCols + displayOffset;
+        for (int i = 0; i < numCols; i++) {
+            line[i] = (char) (ddram[lineAddress + (start + i) % 40] & 0xFF);
+        }
+        return new String(line);
+    }
+
+    public synchronized int getDdram(int address) {
+        return ddram[address & 0x7F] & 0xFF;
+    }
+
+    public synchronized int getCgram(int address) {
+        return cgram[address & 0x3F] & 0xFF;
+    }
+
+    public synchronized int getAddressCounter() {
+        return addressCounter;
+    }
+
+    public synchronized int getDisplayOffset() {
+        return displayOffset;
+    }
+
+    public synchronized int getDisplayControl() {
+        return displayControl;
+    }
+
+    /**
+     * @return colour currently lit, see {@link LcdBackgroundColor}
+     */
+    public synchronized int getBacklight() {
+        int red = (registers[OLATA] >> 6) & 1;
+        int green = (registers[OLATA] >> 7) & 1;
+        int blue = registers[OLATB] & 1;
+        return ~(red | green << 1 | blue << 2) & 0b111;
+    }
+
+    public synchronized long getTransactionCount() {
+        return transactions;
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return total bus time according to the latency model
+     */
+    public synchronized long getSimulatedNanos() {
+        return simulatedNanos;
+    }
+
+    /**
+     * @return instructions or data the HD44780 received while its busy flag was still set
+     */
+    public synchronized long getBusyViolations() {
+        return busyViolations;
+    }
+
+    public synchronized void resetCounters() {
+        transactions = 0;
+        bytesWritten = 0;
+        bytesRead = 0;
+        busyViolations = 0;
+    }
+
+    private void transaction(int written, int read) {
+        transactions++;
+        bytesWritten += written;
+        bytesRead += read;
+        transactionStart = simulatedNanos;
+        simulatedNanos += latencyModel.transactionNanos(written + read);
+    }
+
+    private boolean bank1() {
+        return (registers[IOCON] & IOCON_BANK) != 0;
+    }
+
+    // Map the bus address onto the BANK=0 layout, -1 for unimplemented addresses.
+    private int translate(int address) {
+        if (!bank1()) {
+            return address < REGISTER_COUNT ? address : -1;
+        }
+        if (address <= 0x0A) {
+            return address * 2;
+        }
+        if (address >= 0x10 && address <= 0x1A) {
+            return (address - 0x10) * 2 + 1;
+        }
+        return -1;
+    }
+
+    private void advancePointer() {
+        if ((registers[IOCON] & IOCON_SEQOP) == 0) {
+            addressPointer++;
+            if (!bank1() && addressPointer >= REGISTER_COUNT) {
+                addressPointer = 0;
+            }
+        } else if (!bank1()) {
+            // byte mode in BANK=0 toggles between the A/B register pair
+            addressPointer ^= 1;
+        }
+    }
+
+    private void writeRegister(int value, int byteIndex) {
+        int register = translate(addressPointer);
+        advancePointer();
+        switch (register) {
+            case -1:
+            case INTFA:
+            case INTFB:
+            case INTCAPA:
+            case INTCAPB:
+                return;
+            case IOCON:
+            case IOCON_ALT:
+                registers[IOCON] = value;
+                registers[IOCON_ALT] = value;
+                return;
+            case GPIOA:
+            case OLATA:
+                registers[OLATA] = value;
+                return;
+            case GPIOB:
+            case OLATB:
+                registers[OLATB] = value;
+                updateLcdPins(byteIndex);
+                return;
+            case IODIRB:
+                registers[IODIRB] = value;
+                updateLcdPins(byteIndex);
+                return;
+            default:
+                registers[register] = value;
+        }
+    }
+
+    private int readRegister() {
+        int register = translate(addressPointer);
+        advancePointer();
+        switch (register) {
+            case -1:
+                return 0;
+            case GPIOA:
+                registers[INTFA] = 0;
+                return gpioA();
+            case INTCAPA:
+                registers[INTFA] = 0;
+                return registers[INTCAPA];
+            case GPIOB:
+                return gpioB();
+            default:
+                return registers[register];
+        }
+    }
+
+    private int gpioA() {
+        int inputs = registers[IODIRA];
+        // pull-ups keep released buttons high, IPOL inverts them for the reader
+        int pins = ~buttonInputs & 0b11111;
+        return (registers[OLATA] & ~inputs | (pins ^ registers[IPOLA]) & inputs) & 0xFF;
+    }
+
+    private int gpioB() {
+        int inputs = registers[IODIRB];
+        int pins = registers[OLATB] & ~inputs;
+        int lcd = lcdOutputs();
+        return (pins | lcd & inputs) & 0xFF;
+    }
+
+    // Pins as the LCD sees them: inputs on the MCP side read as low.
+    private int lcdInputs() {
+        return registers[OLATB] & ~registers[IODIRB];
+    }
+
+    private int lcdOutputs() {
+        int pins = lcdInputs();
+        if ((pins & PIN_RW) == 0 || (pins & PIN_E) == 0) {
+            return 0;
+        }
+        int value;
+        if ((pins & PIN_RS) == 0) {
+            value = (isBusy() ? 0x80 : 0) | addressCounter & 0x7F;
+        } else {
+            value = (cgramSelected ? cgram[addressCounter & 0x3F] : ddram[addressCounter & 0x7F]) & 0xFF;
+        }
+        int nibble = (!fourBitMode || !secondNibble) ? value >> 4 : value & 0x0F;
+        return FLIP[nibble];
+    }
+
+    private void updateLcdPins(int byteIndex) {
+        int pins = lcdInputs();
+        boolean enable = (pins & PIN_E) != 0;
+        if (lastEnable && !enable) {
+            latchNibble(pins, byteIndex);
+        }
+        lastEnable = enable;
+    }
+
+    // HD44780 latches on the falling edge of E
+    private void latchNibble(int pins, int byteIndex) {
+        boolean rs = (pins & PIN_RS) != 0;
+        if ((pins & PIN_RW) != 0) {
+            if (!fourBitMode || secondNibble) {
+                if (rs) {
+                    moveAddressCounter(increment);
+                }
+                secondNibble = false;
+            } else {
+                secondNibble = true;
+            }
+            return;
+        }
+        int nibble = UNFLIP[pins & PINS_DATA];
+        if (!fourBitMode) {
+            execute(false, nibble << 4, byteIndex);
+        } else if (!secondNibble) {
+            highNibble = nibble;
+            secondNibble = true;
+        } else {
+            secondNibble = false;
+            execute(rs, highNibble << 4 | nibble, byteIndex);
+        }
+    }
+
+    private boolean isBusy() {
+        return simulatedNanos < busyUntilSimulated && System.nanoTime() < busyUntilReal;
+    }
+
+    private void execute(boolean data, int value, int byteIndex) {
+        long now = transactionStart + latencyModel.transactionNanos(byteIndex + 1);
+        if (now < busyUntilSimulated && System.nanoTime() < busyUntilReal) {
+            busyViolations++;
+        }
+        long duration = FAST_INSTRUCTION_NANOS;
+        if (data) {
+            writeData(value);
+        } else if ((value & 0x80) != 0) {
+            addressCounter = value & 0x7F;
+            cgramSelected = false;
+        } else if ((value & 0x40) != 0) {
+            addressCounter = value & 0x3F;
+            cgramSelected = true;
+        } else if ((value & 0x20) != 0) {
+            // function set selects the interface width, which is how 0x33 0x32
+            // resynchronizes an interface of unknown state
+            fourBitMode = (value & 0x10) == 0;
+            secondNibble = false;
+        } else if ((value & 0x10) != 0) {
+            boolean right = (value & 0x04) != 0;
+            if ((value & 0x08) != 0) {
+                shiftDisplay(!right);
+            } else {
+                moveAddressCounter(right);
+            }
+        } else if ((value & 0x08) != 0) {
+            displayControl = value & 0x07;
+        } else if ((value & 0x04) != 0) {
+            increment = (value & 0x02) != 0;
+            shiftOnWrite = (value & 0x01) != 0;
+        } else if ((value & 0x02) != 0) {
+            addressCounter = 0;
+            cgramSelected = false;
+            displayOffset = 0;
+            duration = SLOW_INSTRUCTION_NANOS;
+        } else if ((value & 0x01) != 0) {
+            for (int i = 0; i < ddram.length; i++) {
+                ddram[i] = ' ';
+            }
+            addressCounter = 0;
+            cgramSelected = false;
+            displayOffset = 0;
+            increment = true;
+            duration = SLOW_INSTRUCTION_NANOS;
+        }
+        busyUntilSimulated = now + duration;
+        busyUntilReal = System.nanoTime() + duration;
+    }
+
+    private void writeData(int value) {
+        if (cgramSelected) {
+            cgram[addressCounter & 0x3F] = (byte) (value & 0x1F);
+        } else {
+            ddram[addressCounter & 0x7F] = (byte) value;
+            if (shiftOnWrite) {
+                shiftDisplay(increment);
+            }
+        }
+        moveAddressCounter(increment);
+    }
+
+    private void moveAddressCounter(boolean forward) {
+        if (cgramSelected) {
+            addressCounter = (addressCounter + (forward ? 1 : -1)) & 0x3F;
+            return;
+        }
+        // two line mode: 0x00-0x27 and 0x40-0x67 wrap into each other
+        int line = addressCounter & 0x40;
+        int column = (addressCounter & 0x3F) + (forward ? 1 : -1);
+        if (column >= 40) {
+            addressCounter = line ^ 0x40;
+        } else if (column < 0) {
+            addressCounter = (line ^ 0x40) + 39;
+        } else {
+            addressCounter = line + column;
+        }
+    }
+
+    private void shiftDisplay(boolean left) {
+        displayOffset = (displayOffset + (left ? 1 : 39)) % 40;
+    }
+
+}
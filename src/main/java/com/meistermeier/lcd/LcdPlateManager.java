@@ -0,0 +1,159 @@
+package com.meistermeier.lcd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Drives several plates, possibly spread over more than one I2C bus.
+ * <p>
+ * Every bus gets one I/O thread that runs all work for the plates on it in submission
+ * order. Different buses are updated in parallel, while the devices sharing one bus
+ * never talk at the same time (selecting the slave address and the transfer itself are
+ * separate steps, which interleaving threads would mix up). Plates handed to the manager
+ * must not be used directly anymore.
+ */
+public class LcdPlateManager implements AutoCloseable {
+
+    private final Map<Integer, ExecutorService> buses = new TreeMap<>();
+    private final Map<LcdPlate, ExecutorService> plates = new LinkedHashMap<>();
+    private boolean closed;
+
+    /**
+     * Connect and initialize a plate on its bus thread
+     *
+     * @param deviceAddress MCP23017 address, 0x20-0x27
+     */
+    public synchronized CompletableFuture<LcdPlate> open(int busNumber, int deviceAddress, int rows, int cols) {
+        ExecutorService bus = bus(busNumber);
+        return CompletableFuture.supplyAsync(() -> {
+            LcdPlate plate = new LcdPlate(busNumber, deviceAddress, rows, cols);
+            synchronized (this) {
+                plates.put(plate, bus);
+            }
+            return plate;
+        }, bus);
+    }
+
+    /**
+     * Take over an already created plate, e.g. one driving an emulator
+     */
+    public synchronized void add(int busNumber, LcdPlate plate) {
+        if (plates.containsKey(plate)) {
+            throw new IllegalArgumentException("plate already managed");
+        }
+        plates.put(plate, bus(busNumber));
+    }
+
+    public synchronized List<LcdPlate> getPlates() {
+        return new ArrayList<>(plates.keySet());
+    }
+
+    /**
+     * Run an action on the bus thread of one plate
+     */
+    public synchronized CompletableFuture<Void> submit(LcdPlate plate, Consumer<LcdPlate> action) {
+        ExecutorService bus = plates.get(plate);
+        if (bus == null) {
+            throw new IllegalArgumentException("plate not managed");
+        }
+        return CompletableFuture.runAsync(() -> action.accept(plate), bus);
+    }
+
+    /**
+     * Run an action for every plate, in parallel across buses
+     *
+     * @return completes when the action finished on all plates
+     */
+    public synchronized CompletableFuture<Void> forEach(Consumer<LcdPlate> action) {
+        List<CompletableFuture<Void>> done = new ArrayList<>(plates.size());
+        for (LcdPlate plate : plates.keySet()) {
+            done.add(submit(plate, action));
+        }
+        return CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[done.size()]));
+    }
+
+    /**
+     * Show the same text on every plate. Newline starts the next row; every row is
+     * overwritten to its full width, so no (slow) clear is needed. The text is encoded
+     * once for all plates.
+     */
+    public synchronized CompletableFuture<Void> broadcast(CharSequence frame) {
+        int maxRows = 0;
+        int maxCols = 0;
+        for (LcdPlate plate : plates.keySet()) {
+            maxRows = Math.max(maxRows, plate.getRows());
+            maxCols = Math.max(maxCols, plate.getCols());
+        }
+        byte[][] codes = encode(frame, maxRows, maxCols);
+        return forEach(plate -> {
+            plate.beginBatch();
+            for (int row = 0; row < plate.getRows(); row++) {
+                plate.setCursor(0, row);
+                plate.writeCodes(codes[row], 0, plate.getCols());
+            }
+            plate.endBatch();
+        });
+    }
+
+    // ROM codes of every row, padded with blanks
+    private static byte[][] encode(CharSequence frame, int rows, int cols) {
+        byte[][] codes = new byte[rows][cols];
+        for (byte[] line : codes) {
+            Arrays.fill(line, (byte) ' ');
+        }
+        int row = 0;
+        int col = 0;
+        for (int i = 0; i < frame.length() && row < rows; i++) {
+            char c = frame.charAt(i);
+            if (c == '\n') {
+                row++;
+                col = 0;
+            } else if (col < cols) {
+                codes[row][col++] = (byte) LcdCharset.encode(c);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Finish everything submitted so far, then stop the bus threads
+     */
+    @Override
+    public void close() {
+        List<ExecutorService> toStop;
+        synchronized (this) {
+            closed = true;
+            toStop = new ArrayList<>(buses.values());
+        }
+        for (ExecutorService bus : toStop) {
+            bus.shutdown();
+        }
+        try {
+            for (ExecutorService bus : toStop) {
+                bus.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ExecutorService bus(int busNumber) {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        return buses.computeIfAbsent(busNumber, number -> Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lcd-bus-" + number);
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+}
@@ -0,0 +1,46 @@
+package com.meistermeier.lcd;
+
+/**
+ * Messages between {@link LcdServer} and {@link LcdClient}. Every message starts with
+ * one of these bytes; numbers are big-endian, text is modified UTF-8 as written by
+ * {@link java.io.DataOutput#writeUTF(String)}.
+ */
+final class LcdProtocol {
+
+    // client to server
+    /**
+     * byte row, byte col, byte width, byte height; answered with {@link #CLAIMED}
+     */
+    static final int CLAIM = 1;
+    /**
+     * byte row, byte col (within the claimed region), UTF text
+     */
+    static final int TEXT = 2;
+    /**
+     * show all text sent since the last commit at once
+     */
+    static final int COMMIT = 3;
+    /**
+     * byte color
+     */
+    static final int BACKLIGHT = 4;
+    /**
+     * start sending {@link #EVENT}s
+     */
+    static final int SUBSCRIBE = 5;
+
+    // server to client
+    /**
+     * byte 1 if the region is now owned by the client, 0 if not
+     */
+    static final int CLAIMED = 0x81;
+    /**
+     * byte type ordinal, byte button ordinal (0xFF for none), byte buttons mask
+     */
+    static final int EVENT = 0x82;
+
+    static final int NO_BUTTON = 0xFF;
+
+    private LcdProtocol() {
+    }
+}
@@ -0,0 +1,393 @@
+package com.meistermeier.lcd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets several processes share one plate. The server owns the {@link LcdPlate} and
+ * listens on a localhost TCP port for {@link LcdClient}s.
+ * <p>
+ * Each client claims a region of the screen and writes text into it; nothing shows until
+ * it commits, so a batch of updates appears at once. One writer thread merges the
+ * committed regions of all clients into a {@link LcdFrameBuffer} and sends only the
+ * changed characters, at most once per frame. Clients committing more often than the
+ * per-client rate are slowed down by no longer reading from their connection.
+ * <p>
+ * Button events are forwarded to subscribed clients; register the server as
+ * {@link ButtonListener}, e.g. with a {@link ButtonSampler}. Every client has its own
+ * bounded outgoing queue and sending thread, so a client that stops reading never holds
+ * up the button thread: its events are dropped once its queue is full.
+ */
+public class LcdServer implements ButtonListener, AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7410;
+
+    // messages waiting to be sent to one client
+    private static final int OUTGOING_CAPACITY = 64;
+    // tells a sending thread to stop
+    private static final byte[] END = new byte[0];
+
+    private final LcdPlate lcd;
+    private final LcdFrameBuffer screen;
+    private final int numLines;
+    private final int numCols;
+    private final ServerSocket serverSocket;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    // committed regions of all clients, copied to the screen by the writer thread
+    private final char[][] merged;
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private volatile long frameMillis = 40;
+    private volatile int commitsPerSecond = 25;
+    private Thread acceptor;
+    private Thread writer;
+    private boolean dirty;
+    private int pendingColor = -1;
+    private volatile boolean closed;
+
+    public LcdServer(LcdPlate lcd, int rows, int cols) throws IOException {
+        this(lcd, rows, cols, DEFAULT_PORT);
+    }
+
+    public LcdServer(LcdPlate lcd, int rows, int cols, int port) throws IOException {
+        this.lcd = lcd;
+        this.numLines = rows;
+        this.numCols = cols;
+        screen = new LcdFrameBuffer(lcd, rows, cols);
+        merged = new char[rows][cols];
+        for (char[] line : merged) {
+            Arrays.fill(line, ' ');
+        }
+        serverSocket = new ServerSocket(port, 8, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @param frameMillis least time between two updates of the display, takes effect
+     *                    from the next frame
+     */
+    public void setFrameMillis(long frameMillis) {
+        this.frameMillis = frameMillis;
+    }
+
+    /**
+     * @param commitsPerSecond commits (and backlight changes) each client may send per second
+     */
+    public void setCommitsPerSecond(int commitsPerSecond) {
+        this.commitsPerSecond = commitsPerSecond;
+    }
+
+    /**
+     * @return number of button events not sent because a client didn't keep up
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public synchronized void start() {
+        if (acceptor != null) {
+            return;
+        }
+        acceptor = new Thread(this::accept, "lcd-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        writer = new Thread(this::write, "lcd-server-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void buttonEvent(ButtonEvent event) {
+        for (Connection connection : connections) {
+            if (connection.subscribed) {
+                connection.send(event);
+            }
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                Thread reader = new Thread(connection, "lcd-server-client");
+                reader.setDaemon(true);
+                reader.start();
+                Thread sender = new Thread(connection::sendAll, "lcd-server-sender");
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // The only thread talking to the plate. The bus is used outside the lock, so commits
+    // never wait for it.
+    private void write() {
+        while (true) {
+            int color;
+            boolean changed;
+            synchronized (this) {
+                while (!dirty && pendingColor < 0) {
+                    if (closed) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                color = pendingColor;
+                pendingColor = -1;
+                changed = dirty;
+                if (dirty) {
+                    for (int row = 0; row < numLines; row++) {
+                        for (int col = 0; col < numCols; col++) {
+                            screen.set(row, col, merged[row][col]);
+                        }
+                    }
+                    dirty = false;
+                }
+            }
+            if (color >= 0) {
+                try {
+                    lcd.backlight(color);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            if (changed) {
+                screen.flush();
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(frameMillis));
+        }
+    }
+
+    private synchronized boolean claim(Connection owner, int row, int col, int width, int height) {
+        if (row < 0 || col < 0 || width < 1 || height < 1 || row + height > numLines || col + width > numCols) {
+            return false;
+        }
+        for (Connection other : connections) {
+            if (other != owner && other.height > 0 && row < other.row + other.height && other.row < row + height
+                    && col < other.col + other.width && other.col < col + width) {
+                return false;
+            }
+        }
+        owner.row = row;
+        owner.col = col;
+        owner.width = width;
+        owner.height = height;
+        return true;
+    }
+
+    private synchronized void commit(Connection connection) {
+        for (int line = 0; line < connection.height; line++) {
+            for (int i = 0; i < connection.width; i++) {
+                merged[connection.row + line][connection.col + i] = connection.staging[line][i];
+            }
+        }
+        dirty = true;
+        notifyAll();
+    }
+
+    // Blank the region of a client that went away, nobody updates it anymore.
+    private synchronized void release(Connection connection) {
+        connections.remove(connection);
+        for (int line = 0; line < connection.height; line++) {
+            Arrays.fill(merged[connection.row + line], connection.col, connection.col + connection.width, ' ');
+        }
+        if (connection.height > 0) {
+            connection.height = 0;
+            dirty = true;
+            notifyAll();
+        }
+    }
+
+    private synchronized void backlight(int color) {
+        pendingColor = color;
+        notifyAll();
+    }
+
+    private final class Connection implements Runnable {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final BlockingQueue<byte[]> outgoing = new ArrayBlockingQueue<>(OUTGOING_CAPACITY);
+        private volatile boolean subscribed;
+        // claimed region, none while height is 0
+        private int row;
+        private int col;
+        private int width;
+        private int height;
+        private char[][] staging = new char[0][];
+        private long nextAllowed;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    int message = in.read();
+                    if (message < 0) {
+                        break;
+                    }
+                    handle(message);
+                }
+            } catch (EOFException e) {
+                // client went away in the middle of a message
+            } catch (IOException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            } finally {
+                release(this);
+                close();
+            }
+        }
+
+        // Sending thread of the connection.
+        private void sendAll() {
+            try {
+                while (true) {
+                    byte[] message = outgoing.take();
+                    if (message == END) {
+                        break;
+                    }
+                    out.write(message);
+                    // more waiting means more to come right away
+                    if (outgoing.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void handle(int message) throws IOException {
+            switch (message) {
+                case LcdProtocol.CLAIM:
+                    int claimRow = in.readUnsignedByte();
+                    int claimCol = in.readUnsignedByte();
+                    int claimWidth = in.readUnsignedByte();
+                    int claimHeight = in.readUnsignedByte();
+                    boolean claimed = claim(this, claimRow, claimCol, claimWidth, claimHeight);
+                    if (claimed) {
+                        staging = new char[claimHeight][claimWidth];
+                        for (char[] line : staging) {
+                            Arrays.fill(line, ' ');
+                        }
+                    }
+                    try {
+                        // waits if the client doesn't read, as this is its own thread
+                        outgoing.put(new byte[]{(byte) LcdProtocol.CLAIMED, (byte) (claimed ? 1 : 0)});
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted while answering a claim", e);
+                    }
+                    break;
+                case LcdProtocol.TEXT:
+                    int line = in.readUnsignedByte();
+                    int start = in.readUnsignedByte();
+                    String text = in.readUTF();
+                    if (line < height) {
+                        for (int i = 0; i < text.length() && start + i < width; i++) {
+                            staging[line][start + i] = text.charAt(i);
+                        }
+                    }
+                    break;
+                case LcdProtocol.COMMIT:
+                    throttle();
+                    if (height > 0) {
+                        commit(this);
+                    }
+                    break;
+                case LcdProtocol.BACKLIGHT:
+                    int color = in.readUnsignedByte();
+                    throttle();
+                    backlight(color);
+                    break;
+                case LcdProtocol.SUBSCRIBE:
+                    subscribed = true;
+                    break;
+                default:
+                    throw new IOException("unknown message " + message);
+            }
+        }
+
+        // Wait until the client may commit again, which stops reading its messages.
+        private void throttle() {
+            long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, commitsPerSecond);
+            long now = System.nanoTime();
+            if (nextAllowed - now > 0) {
+                LockSupport.parkNanos(nextAllowed - now);
+                now = nextAllowed;
+            }
+            nextAllowed = now + interval;
+        }
+
+        // Never blocks the caller, drops the event if the client is behind.
+        private void send(ButtonEvent event) {
+            byte[] message = {(byte) LcdProtocol.EVENT, (byte) event.getType().ordinal(),
+                    (byte) (event.getButton() == null ? LcdProtocol.NO_BUTTON : event.getButton().ordinal()),
+                    (byte) event.getButtons()};
+            if (!outgoing.offer(message)) {
+                droppedEvents.incrementAndGet();
+            }
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            // a full queue is no reason to keep the sending thread
+            outgoing.clear();
+            outgoing.offer(END);
+        }
+    }
+}
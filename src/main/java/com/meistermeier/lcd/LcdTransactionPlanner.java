@@ -0,0 +1,125 @@
+package com.meistermeier.lcd;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Collects the PORTB strobe sequences of LCD commands and characters and sends them as
+ * few block writes to GPIOB as possible.
+ * <p>
+ * The port expander runs with sequential addressing off, so a block write keeps hitting
+ * GPIOB and consecutive sequences can be concatenated freely. Transfers are split at
+ * {@link #getMaxTransferSize()}, always between two complete sequences.
+ */
+final class LcdTransactionPlanner {
+
+    // I2C block data write is limited to 32 bytes by SMBus.
+    static final int SMBUS_BLOCK_MAX = 32;
+
+    // The LCD data pins (D4-D7) connect to MCP pins 12-9 (PORTB4-1), in
+    // that order.  Because this sequence is 'reversed,' a direct shift
+    // won't work.  This table remaps 4-bit data values to MCP PORTB
+    // outputs, incorporating both the reverse and shift.
+    private static final int[] FLIP = {0b00000000, 0b00010000, 0b00001000, 0b00011000,
+            0b00000100, 0b00010100, 0b00001100, 0b00011100,
+            0b00000010, 0b00010010, 0b00001010, 0b00011010,
+            0b00000110, 0b00010110, 0b00001110, 0b00011110};
+
+    // PORTB sequences for every byte value, without RS and backlight bits:
+    // the high 4 data bits with strobe (enable) set and unset, then the same
+    // with the low 4 data bits.
+    private static final byte[] STROBES = new byte[256 * 4];
+
+    static {
+        for (int value = 0; value < 256; value++) {
+            int hi = FLIP[value >> 4];
+            int lo = FLIP[value & 0x0F];
+            STROBES[value * 4] = (byte) (hi | 0b00100000);
+            STROBES[value * 4 + 1] = (byte) hi;
+            STROBES[value * 4 + 2] = (byte) (lo | 0b00100000);
+            STROBES[value * 4 + 3] = (byte) lo;
+        }
+    }
+
+    private final I2CDevice device;
+    private final int register;
+    private final RegisterShadow shadow;
+    private byte[] buffer = new byte[4 * 40];
+    private int length;
+    private int maxTransferSize = SMBUS_BLOCK_MAX;
+
+    /**
+     * @param shadow told about the port state after every transfer
+     */
+    LcdTransactionPlanner(I2CDevice device, int register, RegisterShadow shadow) {
+        this.device = device;
+        this.register = register;
+        this.shadow = shadow;
+    }
+
+    int getMaxTransferSize() {
+        return maxTransferSize;
+    }
+
+    /**
+     * @param maxTransferSize bytes per block write, rounded down to whole sequences
+     */
+    void setMaxTransferSize(int maxTransferSize) {
+        if (maxTransferSize < 4) {
+            throw new IllegalArgumentException("transfer size must hold at least one sequence: " + maxTransferSize);
+        }
+        this.maxTransferSize = maxTransferSize & ~3;
+    }
+
+    boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Queue the 4-bit sequence of one command or character.
+     *
+     * @param bitMask RS and backlight bits to keep set on PORTB
+     * @return PORTB state after the sequence
+     */
+    int append(int bitMask, int value) {
+        if (buffer.length < length + 4) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        length = out4(buffer, length, bitMask, value);
+        return buffer[length - 1] & 0xFF;
+    }
+
+    /**
+     * Send everything queued so far
+     */
+    void flush() throws IOException {
+        if (length == 0) {
+            return;
+        }
+        shadow.forget(register);
+        try {
+            for (int offset = 0; offset < length; offset += maxTransferSize) {
+                device.write(register, buffer, offset, Math.min(maxTransferSize, length - offset));
+            }
+            shadow.written(register, buffer[length - 1]);
+        } finally {
+            length = 0;
+        }
+    }
+
+    // Low-level 4-bit interface for LCD output.  This doesn't actually
+    // write data, just puts the 4 bytes of PORTB state over time into the
+    // buffer and returns the offset behind them.  Consecutive calls can be
+    // concatenated for more efficient batch write.
+    static int out4(byte[] buffer, int offset, int bitMask, int value) {
+        int sequence = (value & 0xFF) * 4;
+        buffer[offset] = (byte) (STROBES[sequence] | bitMask);
+        buffer[offset + 1] = (byte) (STROBES[sequence + 1] | bitMask);
+        buffer[offset + 2] = (byte) (STROBES[sequence + 2] | bitMask);
+        buffer[offset + 3] = (byte) (STROBES[sequence + 3] | bitMask);
+        return offset + 4;
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.meistermeier.lcd;
+
+import java.util.List;
+
+/**
+ * Scrollable list with a selection marker, moved with UP and DOWN and chosen with SELECT
+ * or RIGHT.
+ * <p>
+ * Entries come from a {@link Model}, which is only asked for the rows on screen, so the
+ * list may be far longer than the display. Moving the marker within the visible rows
+ * redraws just the two rows it leaves and enters.
+ */
+public class ListMenu extends Widget {
+
+    private static final char MARKER = '>';
+
+    public interface Model {
+
+        int size();
+
+        CharSequence get(int index);
+
+        static Model of(List<? extends CharSequence> entries) {
+            return new Model() {
+                @Override
+                public int size() {
+                    return entries.size();
+                }
+
+                @Override
+                public CharSequence get(int index) {
+                    return entries.get(index);
+                }
+            };
+        }
+    }
+
+    public interface Listener {
+
+        void selected(ListMenu menu, int index);
+    }
+
+    private final Model model;
+    private Listener listener;
+    private int selected;
+    // index of the entry in the first row
+    private int top;
+
+    public ListMenu(int row, int col, int width, int height, Model model) {
+        super(row, col, width, height);
+        this.model = model;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int getSelected() {
+        return selected;
+    }
+
+    public void setSelected(int index) {
+        int size = model.size();
+        index = Math.max(0, Math.min(index, size - 1));
+        if (index < top) {
+            top = index;
+            invalidate();
+        } else if (index >= top + height) {
+            top = index - height + 1;
+            invalidate();
+        } else if (index != selected) {
+            invalidateRow(selected - top);
+            invalidateRow(index - top);
+        }
+        selected = index;
+    }
+
+    /**
+     * Redraw after the entries of the model changed
+     */
+    public void modelChanged() {
+        int size = model.size();
+        top = Math.max(0, Math.min(top, size - height));
+        selected = Math.max(0, Math.min(selected, size - 1));
+        invalidate();
+    }
+
+    @Override
+    protected boolean handle(Button button) {
+        switch (button) {
+            case UP:
+                setSelected(selected - 1);
+                return true;
+            case DOWN:
+                setSelected(selected + 1);
+                return true;
+            case SELECT:
+            case RIGHT:
+                if (listener != null && selected < model.size()) {
+                    listener.selected(this, selected);
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void drawRow(LcdFrameBuffer screen, int line) {
+        int index = top + line;
+        if (index >= model.size()) {
+            put(screen, line, "");
+            return;
+        }
+        screen.set(row + line, col, index == selected ? MARKER : ' ');
+        put(screen, line, 1, model.get(index));
+    }
+}
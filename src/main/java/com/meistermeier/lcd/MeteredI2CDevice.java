@@ -0,0 +1,119 @@
+package com.meistermeier.lcd;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import java.io.IOException;
+
+/**
+ * Records every transfer of the wrapped device in {@link LcdMetrics}.
+ */
+class MeteredI2CDevice implements I2CDevice {
+
+    private final I2CDevice device;
+    private final LcdMetrics metrics;
+
+    MeteredI2CDevice(I2CDevice device, LcdMetrics metrics) {
+        this.device = device;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(byte b) throws IOException {
+        long start = System.nanoTime();
+        try {
+            device.write(b);
+        } catch (IOException e) {
+            metrics.ioError();
+            throw e;
+        }
+        metrics.write(1, System.nanoTime() - start);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int size) throws IOException {
+        long start = System.nanoTime();
+        try {
+            device.write(buffer, offset, size);
+        } catch (IOException e) {
+            metrics.ioError();
+            throw e;
+        }
+        metrics.write(size, System.nanoTime() - start);
+    }
+
+    @Override
+    public void write(int address, byte b) throws IOException {
+        long start = System.nanoTime();
+        try {
+            device.write(address, b);
+        } catch (IOException e) {
+            metrics.ioError();
+            throw e;
+        }
+        metrics.write(1, System.nanoTime() - start);
+    }
+
+    @Override
+    public void write(int address, byte[] buffer, int offset, int size) throws IOException {
+        long start = System.nanoTime();
+        try {
+            device.write(address, buffer, offset, size);
+        } catch (IOException e) {
+            metrics.ioError();
+            throw e;
+        }
+        metrics.write(size, System.nanoTime() - start);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            int value = device.read();
+            metrics.read(1, System.nanoTime() - start);
+            return value;
+        } catch (IOException e) {
+            metrics.ioError();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int size) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int read = device.read(buffer, offset, size);
+            metrics.read(size, System.nanoTime() - start);
+            return read;
+        } catch (IOException e) {
+            metrics.ioError();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(int address) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int value = device.read(address);
+            metrics.read(1, System.nanoTime() - start);
+            return value;
+        } catch (IOException e) {
+            metrics.ioError();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(int address, byte[] buffer, int offset, int size) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int read = device.read(address, buffer, offset, size);
+            metrics.read(size, System.nanoTime() - start);
+            return read;
+        } catch (IOException e) {
+            metrics.ioError();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.meistermeier.lcd;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends every transaction of the wrapped device to an {@link I2CLog} in a memory
+ * mapped file, e.g. {@code new LcdPlate(new RecordingI2CDevice(device, path, 1 << 24), 2, 16)}.
+ * <p>
+ * Recording is a copy into the mapping; the operating system writes it back to the file.
+ * The file has a fixed capacity, transactions not fitting anymore are only counted, see
+ * {@link #getDropped()}.
+ */
+public class RecordingI2CDevice implements I2CDevice, Closeable {
+
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final I2CDevice device;
+    private final FileChannel channel;
+    private final MappedByteBuffer log;
+    private final long start;
+    private long dropped;
+
+    /**
+     * @param capacity size of the log file in bytes
+     */
+    public RecordingI2CDevice(I2CDevice device, Path file, int capacity) throws IOException {
+        this.device = device;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        start = System.nanoTime();
+        I2CLog.writeHeader(log, System.currentTimeMillis());
+    }
+
+    /**
+     * @return number of transactions that didn't fit into the file anymore
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Write the log back to the file and unmap it as far as Java allows
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        log.force();
+        channel.close();
+    }
+
+    private synchronized void record(int operation, long timestamp, int register, byte[] data, int offset, int length) {
+        if (log.remaining() < I2CLog.RECORD_HEADER_SIZE + length) {
+            dropped++;
+            return;
+        }
+        log.put((byte) operation);
+        log.putLong(timestamp - start);
+        log.put((byte) register);
+        log.putShort((short) length);
+        log.put(data, offset, length);
+    }
+
+    private synchronized void record(int operation, long timestamp, int register, int value) {
+        if (log.remaining() < I2CLog.RECORD_HEADER_SIZE + 1) {
+            dropped++;
+            return;
+        }
+        log.put((byte) operation);
+        log.putLong(timestamp - start);
+        log.put((byte) register);
+        log.putShort((short) 1);
+        log.put((byte) value);
+    }
+
+    private void failed(int operation, long timestamp, int register) {
+        record(operation | I2CLog.FAILED, timestamp, register, NO_DATA, 0, 0);
+    }
+
+    @Override
+    public void write(byte b) throws IOException {
+        long now = System.nanoTime();
+        try {
+            device.write(b);
+        } catch (IOException e) {
+            failed(I2CLog.WRITE, now, 0);
+            throw e;
+        }
+        record(I2CLog.WRITE, now, 0, b);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int size) throws IOException {
+        long now = System.nanoTime();
+        try {
+            device.write(buffer, offset, size);
+        } catch (IOException e) {
+            failed(I2CLog.WRITE, now, 0);
+            throw e;
+        }
+        record(I2CLog.WRITE, now, 0, buffer, offset, size);
+    }
+
+    @Override
+    public void write(int address, byte b) throws IOException {
+        long now = System.nanoTime();
+        try {
+            device.write(address, b);
+        } catch (IOException e) {
+            failed(I2CLog.WRITE_REGISTER, now, address);
+            throw e;
+        }
+        record(I2CLog.WRITE_REGISTER, now, address, b);
+    }
+
+    @Override
+    public void write(int address, byte[] buffer, int offset, int size) throws IOException {
+        long now = System.nanoTime();
+        try {
+            device.write(address, buffer, offset, size);
+        } catch (IOException e) {
+            failed(I2CLog.WRITE_REGISTER, now, address);
+            throw e;
+        }
+        record(I2CLog.WRITE_REGISTER, now, address, buffer, offset, size);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long now = System.nanoTime();
+        int value;
+        try {
+            value = device.read();
+        } catch (IOException e) {
+            failed(I2CLog.READ, now, 0);
+            throw e;
+        }
+        record(I2CLog.READ, now, 0, value);
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int size) throws IOException {
+        long now = System.nanoTime();
+        int read;
+        try {
+            read = device.read(buffer, offset, size);
+        } catch (IOException e) {
+            failed(I2CLog.READ, now, 0);
+            throw e;
+        }
+        record(I2CLog.READ, now, 0, buffer, offset, Math.max(0, read));
+        return read;
+    }
+
+    @Override
+    public int read(int address) throws IOException {
+        long now = System.nanoTime();
+        int value;
+        try {
+            value = device.read(address);
+        } catch (IOException e) {
+            failed(I2CLog.READ_REGISTER, now, address);
+            throw e;
+        }
+        record(I2CLog.READ_REGISTER, now, address, value);
+        return value;
+    }
+
+    @Override
+    public int read(int address, byte[] buffer, int offset, int size) throws IOException {
+        long now = System.nanoTime();
+        int read;
+        try {
+            read = device.read(address, buffer, offset, size);
+        } catch (IOException e) {
+            failed(I2CLog.READ_REGISTER, now, address);
+            throw e;
+        }
+        record(I2CLog.READ_REGISTER, now, address, buffer, offset, Math.max(0, read));
+        return read;
+    }
+}
@@ -0,0 +1,73 @@
+package com.meistermeier.lcd;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Last values written to the MCP23017 registers (Bank 1 addresses), so writes that would
+ * not change anything can be skipped.
+ * <p>
+ * Writes done without the shadow have to be reported with {@link #written(int, int)}.
+ * A failed write leaves the register unknown, so the next write goes out for sure.
+ */
+final class RegisterShadow {
+
+    private static final int REGISTERS = 0x20;
+
+    private final I2CDevice device;
+    private final int[] values = new int[REGISTERS];
+    private final boolean[] known = new boolean[REGISTERS];
+    private int skipped;
+
+    RegisterShadow(I2CDevice device) {
+        this.device = device;
+    }
+
+    /**
+     * Write a register unless it already holds the value
+     *
+     * @return whether a write was needed
+     */
+    boolean write(int register, int value) throws IOException {
+        value &= 0xFF;
+        if (known[register] && values[register] == value) {
+            skipped++;
+            return false;
+        }
+        known[register] = false;
+        device.write(register, (byte) value);
+        written(register, value);
+        return true;
+    }
+
+    void written(int register, int value) {
+        values[register] = value & 0xFF;
+        known[register] = true;
+    }
+
+    /**
+     * Record a block written in Bank 0 layout, where the A and B registers alternate
+     */
+    void writtenBank0(byte[] block, int length) {
+        for (int address = 0; address < length; address++) {
+            written(address >> 1 | (address & 1) << 4, block[address]);
+        }
+    }
+
+    void forget(int register) {
+        known[register] = false;
+    }
+
+    void invalidate() {
+        Arrays.fill(known, false);
+    }
+
+    /**
+     * @return number of writes skipped because the register already held the value
+     */
+    int getSkipped() {
+        return skipped;
+    }
+}
@@ -0,0 +1,115 @@
+package com.meistermeier.lcd;
+
+import java.util.Arrays;
+
+/**
+ * Rolling chart of the latest values, one pixel column per value and eight levels per
+ * row, e.g. for a load average updated several times a second.
+ * <p>
+ * Every cell shows a custom character and owns two CGRAM slots. A changed cell gets its
+ * new shape in the slot that is not on screen, and only then is the cell switched over,
+ * so an update never tears a visible cell. Only glyph rows that differ from what the
+ * hidden slot already holds are uploaded; cells whose shape didn't change are not touched.
+ * This needs two slots per cell: four cells at most, less next to other custom characters.
+ */
+public class Sparkline extends Widget {
+
+    private static final int ROWS = 8;
+
+    private final LcdPlate lcd;
+    private final int firstSlot;
+    private final double min;
+    private final double max;
+    // levels 0-8 of the latest values, oldest first
+    private final int[] levels;
+    private int count;
+    // CGRAM content of every slot (relative to firstSlot), null if unknown
+    private final byte[][] slots;
+    // which slot of its pair each cell shows
+    private final int[] shown;
+    private final byte[] glyph = new byte[ROWS];
+
+    /**
+     * @param firstSlot first of the 2 * width CGRAM slots used
+     */
+    public Sparkline(LcdPlate lcd, int row, int col, int width, int firstSlot, double min, double max) {
+        super(row, col, width, 1);
+        if (firstSlot < 0 || firstSlot + 2 * width > 8) {
+            throw new IllegalArgumentException("no room for " + 2 * width + " glyphs from slot " + firstSlot);
+        }
+        this.lcd = lcd;
+        this.firstSlot = firstSlot;
+        this.min = min;
+        this.max = max;
+        levels = new int[width * 5];
+        slots = new byte[2 * width][];
+        shown = new int[width];
+        Arrays.fill(shown, -1);
+    }
+
+    /**
+     * Append a value, dropping the oldest one
+     */
+    public void add(double value) {
+        double fraction = (value - min) / (max - min);
+        int level = (int) Math.round(Math.max(0, Math.min(1, fraction)) * ROWS);
+        System.arraycopy(levels, 1, levels, 0, levels.length - 1);
+        levels[levels.length - 1] = level;
+        count = Math.min(count + 1, levels.length);
+        invalidate();
+    }
+
+    @Override
+    protected void drawRow(LcdFrameBuffer screen, int line) {
+        for (int cell = 0; cell < width; cell++) {
+            render(cell);
+            int current = shown[cell];
+            if (current < 0 || !Arrays.equals(slots[cell * 2 + current], glyph)) {
+                current = current == 0 ? 1 : 0;
+                upload(cell * 2 + current);
+                shown[cell] = current;
+            }
+            // unchanged cells cost nothing, the frame buffer only sends differences
+            screen.set(row + line, col + cell, (char) (firstSlot + cell * 2 + current));
+        }
+    }
+
+    // Bitmap of a cell into glyph: a column per value, filled from the bottom.
+    private void render(int cell) {
+        Arrays.fill(glyph, (byte) 0);
+        for (int x = 0; x < 5; x++) {
+            int index = cell * 5 + x;
+            // values not there yet stay blank on the left
+            if (index < levels.length - count) {
+                continue;
+            }
+            int bit = 1 << (4 - x);
+            for (int y = ROWS - levels[index]; y < ROWS; y++) {
+                glyph[y] |= bit;
+            }
+        }
+    }
+
+    // Send the rows of glyph that differ from what the slot holds.
+    private void upload(int slot) {
+        byte[] content = slots[slot];
+        if (content == null) {
+            lcd.createChar(firstSlot + slot, glyph);
+            slots[slot] = glyph.clone();
+            return;
+        }
+        int first = 0;
+        while (first < ROWS && content[first] == glyph[first]) {
+            first++;
+        }
+        if (first == ROWS) {
+            return;
+        }
+        int last = ROWS - 1;
+        while (content[last] == glyph[last]) {
+            last--;
+        }
+        lcd.updateChar(firstSlot + slot, first, glyph, first, last - first + 1);
+        System.arraycopy(glyph, first, content, first, last - first + 1);
+    }
+}
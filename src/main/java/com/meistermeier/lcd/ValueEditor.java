@@ -0,0 +1,72 @@
+package com.meistermeier.lcd;
+
+/**
+ * Single row with a label and a number, changed with UP and DOWN
+ */
+public class ValueEditor extends Widget {
+
+    public interface Listener {
+
+        void valueChanged(ValueEditor editor, int value);
+    }
+
+    private final CharSequence label;
+    private final int min;
+    private final int max;
+    private final int step;
+    private int value;
+    private Listener listener;
+
+    public ValueEditor(int row, int col, int width, CharSequence label, int min, int max, int step, int value) {
+        super(row, col, width, 1);
+        this.label = label;
+        this.min = min;
+        this.max = max;
+        this.step = step;
+        this.value = Math.max(min, Math.min(value, max));
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public void setValue(int value) {
+        value = Math.max(min, Math.min(value, max));
+        if (value != this.value) {
+            this.value = value;
+            invalidate();
+            if (listener != null) {
+                listener.valueChanged(this, value);
+            }
+        }
+    }
+
+    @Override
+    protected boolean handle(Button button) {
+        switch (button) {
+            case UP:
+                setValue(value + step);
+                return true;
+            case DOWN:
+                setValue(value - step);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // label on the left, value right aligned
+    @Override
+    protected void drawRow(LcdFrameBuffer screen, int line) {
+        put(screen, line, label);
+        String number = Integer.toString(value);
+        int start = Math.max(0, width - number.length());
+        for (int i = start; i < width; i++) {
+            screen.set(row + line, col + i, number.charAt(i - start));
+        }
+    }
+}
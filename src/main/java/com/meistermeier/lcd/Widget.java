@@ -0,0 +1,85 @@
+package com.meistermeier.lcd;
+
+/**
+ * Rectangular part of the screen that draws itself into a {@link LcdFrameBuffer}.
+ * <p>
+ * Widgets remember which of their rows changed and {@link WidgetScreen} only redraws
+ * those; the frame buffer then sends only the characters that actually differ.
+ */
+public abstract class Widget {
+
+    protected final int row;
+    protected final int col;
+    protected final int width;
+    protected final int height;
+    // bit per row of the widget
+    private int dirtyRows;
+
+    protected Widget(int row, int col, int width, int height) {
+        if (height < 1 || height > 31) {
+            throw new IllegalArgumentException("height out of range: " + height);
+        }
+        this.row = row;
+        this.col = col;
+        this.width = width;
+        this.height = height;
+        invalidate();
+    }
+
+    /**
+     * Draw one row of the widget, see {@link #put(LcdFrameBuffer, int, CharSequence)}
+     *
+     * @param line row within the widget
+     */
+    protected abstract void drawRow(LcdFrameBuffer screen, int line);
+
+    /**
+     * React to a pressed (or repeated) button
+     *
+     * @return whether the button was used
+     */
+    protected boolean handle(Button button) {
+        return false;
+    }
+
+    /**
+     * Have every row redrawn
+     */
+    public void invalidate() {
+        dirtyRows = (1 << height) - 1;
+    }
+
+    protected void invalidateRow(int line) {
+        dirtyRows |= 1 << line;
+    }
+
+    boolean isDirty() {
+        return dirtyRows != 0;
+    }
+
+    void draw(LcdFrameBuffer screen) {
+        for (int line = 0; line < height; line++) {
+            if ((dirtyRows & 1 << line) != 0) {
+                drawRow(screen, line);
+            }
+        }
+        dirtyRows = 0;
+    }
+
+    /**
+     * Fill a row of the widget with text, cut off or padded with blanks to its width
+     */
+    protected void put(LcdFrameBuffer screen, int line, CharSequence text) {
+        put(screen, line, 0, text);
+    }
+
+    /**
+     * Fill a row of the widget from the given column on
+     */
+    protected void put(LcdFrameBuffer screen, int line, int offset, CharSequence text) {
+        int length = text.length();
+        for (int i = offset; i < width; i++) {
+            screen.set(row + line, col + i, i - offset < length ? text.charAt(i - offset) : ' ');
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.meistermeier.lcd;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Stack of pages of widgets on a {@link LcdFrameBuffer}, e.g. one page per menu level.
+ * <p>
+ * Button events go to the focused widget of the top page; LEFT goes back to the page
+ * below if the widget doesn't use it. After every event only the dirty rows of the
+ * widgets are redrawn. Register it with a {@link ButtonSampler} to drive it.
+ */
+public class WidgetScreen implements ButtonListener {
+
+    private static final class Page {
+        private final Widget focus;
+        private final Widget[] widgets;
+
+        private Page(Widget focus, Widget[] widgets) {
+            this.focus = focus;
+            this.widgets = widgets;
+        }
+    }
+
+    private final LcdFrameBuffer screen;
+    private final Deque<Page> pages = new ArrayDeque<>();
+
+    public WidgetScreen(LcdFrameBuffer screen) {
+        this.screen = screen;
+    }
+
+    /**
+     * Show a new page on top of the current one
+     *
+     * @param focus  widget receiving the buttons
+     * @param others further widgets on the page
+     */
+    public synchronized void push(Widget focus, Widget... others) {
+        Widget[] widgets = new Widget[others.length + 1];
+        widgets[0] = focus;
+        System.arraycopy(others, 0, widgets, 1, others.length);
+        pages.push(new Page(focus, widgets));
+        show();
+    }
+
+    /**
+     * Go back to the page below, the first page stays
+     */
+    public synchronized void pop() {
+        if (pages.size() > 1) {
+            pages.pop();
+            show();
+        }
+    }
+
+    public synchronized int getDepth() {
+        return pages.size();
+    }
+
+    /**
+     * Draw the dirty rows of the current page and send the changes
+     */
+    public synchronized void render() {
+        Page page = pages.peek();
+        if (page == null) {
+            return;
+        }
+        for (Widget widget : page.widgets) {
+            if (widget.isDirty()) {
+                widget.draw(screen);
+            }
+        }
+        screen.flush();
+    }
+
+    @Override
+    public synchronized void buttonEvent(ButtonEvent event) {
+        Page page = pages.peek();
+        if (page == null || (event.getType() != ButtonEvent.Type.PRESSED && event.getType() != ButtonEvent.Type.REPEAT)) {
+            return;
+        }
+        Button button = event.getButton();
+        if (!page.focus.handle(button) && button == Button.LEFT) {
+            pop();
+            return;
+        }
+        render();
+    }
+
+    // Blank the frame and draw the whole top page.
+    private void show() {
+        screen.setFrame("");
+        for (Widget widget : pages.peek().widgets) {
+            widget.invalidate();
+        }
+        render();
+    }
+}
@@ -0,0 +1,156 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncLcdPlateTest {
+
+    private final LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+    private final FaultyDevice device = new FaultyDevice(emulator);
+    private final LcdPlate lcd = new LcdPlate(device, 2, 16);
+    private final CountDownLatch writerHeld = new CountDownLatch(1);
+    private final CountDownLatch releaseWriter = new CountDownLatch(1);
+
+    @Test(timeout = 5000)
+    public void waitingLineUpdatesAreCoalesced() throws Exception {
+        // poll for the home at the end of the initialization now
+        lcd.write("");
+        AsyncLcdPlate plate = new AsyncLcdPlate(lcd, 2, 16);
+        holdWriter(plate);
+        CompletableFuture<Void> first = plate.setLine(0, "first");
+        CompletableFuture<Void> second = plate.setLine(0, "second");
+        assertSame(first, second);
+        emulator.resetCounters();
+        releaseWriter.countDown();
+        first.get();
+        assertEquals("second          ", emulator.getVisibleText(0));
+        // "first" never made it to the glass
+        assertEquals(bytesToDraw("second"), emulator.getBytesWritten());
+        plate.close();
+    }
+
+    private static long bytesToDraw(String line) {
+        LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+        LcdPlate lcd = new LcdPlate(emulator, 2, 16);
+        LcdFrameBuffer screen = new LcdFrameBuffer(lcd, 2, 16);
+        lcd.write("");
+        emulator.resetCounters();
+        screen.setLine(0, line);
+        screen.flush();
+        return emulator.getBytesWritten();
+    }
+
+    @Test(timeout = 5000)
+    public void commandsRunInSubmissionOrderBeforeTheLines() throws Exception {
+        AsyncLcdPlate plate = new AsyncLcdPlate(lcd, 2, 16);
+        holdWriter(plate);
+        List<String> order = new ArrayList<>();
+        plate.setLine(1, "line");
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            plate.submit(p -> order.add(index + emulator.getVisibleText(1).trim()));
+        }
+        releaseWriter.countDown();
+        plate.close();
+        assertEquals("[0, 1, 2, 3, 4]", order.toString());
+        assertEquals("line            ", emulator.getVisibleText(1));
+    }
+
+    @Test(timeout = 5000)
+    public void submitBlocksWhileTheQueueIsFull() throws Exception {
+        AsyncLcdPlate plate = new AsyncLcdPlate(lcd, 2, 16, 2);
+        holdWriter(plate);
+        plate.submit(p -> {
+        });
+        plate.submit(p -> {
+        });
+        CompletableFuture<CompletableFuture<Void>> third = new CompletableFuture<>();
+        Thread submitter = new Thread(() -> {
+            try {
+                third.complete(plate.submit(p -> {
+                }));
+            } catch (InterruptedException e) {
+                third.completeExceptionally(e);
+            }
+        });
+        submitter.start();
+        while (submitter.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        assertFalse(third.isDone());
+        releaseWriter.countDown();
+        third.get().get();
+        plate.close();
+    }
+
+    @Test(timeout = 5000)
+    public void closeDrawsWhatIsPendingAndRefusesMore() throws Exception {
+        AsyncLcdPlate plate = new AsyncLcdPlate(lcd, 2, 16);
+        holdWriter(plate);
+        CompletableFuture<Void> line = plate.setLine(0, "bye");
+        CompletableFuture<Void> color = plate.backlight(LcdBackgroundColor.RED.getColorValue());
+        Thread closer = new Thread(plate::close);
+        closer.start();
+        while (closer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        releaseWriter.countDown();
+        closer.join();
+        assertTrue(line.isDone() && color.isDone());
+        assertEquals("bye             ", emulator.getVisibleText(0));
+        assertEquals(LcdBackgroundColor.RED.getColorValue(), emulator.getBacklight());
+        try {
+            plate.setLine(0, "late");
+            fail("closed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void busFailuresCompleteTheFuturesExceptionally() throws Exception {
+        AsyncLcdPlate plate = new AsyncLcdPlate(lcd, 2, 16);
+        device.failWrites = true;
+        assertFailed(plate.setLine(0, "lost"));
+        assertFailed(plate.submit(p -> p.message("lost")));
+
+        device.failWrites = false;
+        plate.submit(p -> {
+        }).get();
+        plate.close();
+    }
+
+    private static void assertFailed(CompletableFuture<Void> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("completed normally");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    // Keep the writer thread busy in a command until releaseWriter
+    private void holdWriter(AsyncLcdPlate plate) throws InterruptedException {
+        plate.submit(p -> {
+            writerHeld.countDown();
+            try {
+                releaseWriter.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(writerHeld.await(1, TimeUnit.SECONDS));
+    }
+}
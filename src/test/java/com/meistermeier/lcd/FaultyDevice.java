@@ -0,0 +1,71 @@
+package com.meistermeier.lcd;
+
+import com.pi4j.io.i2c.I2CDevice;
+
+import java.io.IOException;
+
+/**
+ * Passes everything on, but can report the busy flag as stuck or fail every write
+ */
+class FaultyDevice implements I2CDevice {
+
+    private final I2CDevice device;
+    volatile boolean stuck;
+    volatile boolean failWrites;
+
+    FaultyDevice(I2CDevice device) {
+        this.device = device;
+    }
+
+    @Override
+    public void write(byte b) throws IOException {
+        checkWrite();
+        device.write(b);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int size) throws IOException {
+        checkWrite();
+        device.write(buffer, offset, size);
+    }
+
+    @Override
+    public void write(int address, byte b) throws IOException {
+        checkWrite();
+        device.write(address, b);
+    }
+
+    @Override
+    public void write(int address, byte[] buffer, int offset, int size) throws IOException {
+        checkWrite();
+        device.write(address, buffer, offset, size);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return device.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int size) throws IOException {
+        return device.read(buffer, offset, size);
+    }
+
+    @Override
+    public int read(int address) throws IOException {
+        int value = device.read(address);
+        // GPIOB, D7 sits on bit 1
+        return stuck && address == 0x19 ? value | 0b10 : value;
+    }
+
+    @Override
+    public int read(int address, byte[] buffer, int offset, int size) throws IOException {
+        return device.read(address, buffer, offset, size);
+    }
+
+    private void checkWrite() throws IOException {
+        if (failWrites) {
+            throw new IOException("write failed");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class I2CBusSchedulerTest {
+
+    @Test(timeout = 30000)
+    public void interruptedSensorWaiterLetsTheDisplayGo() throws Exception {
+        // the display can only get stuck in a narrow window, so try a few times
+        for (int attempt = 0; attempt < 20; attempt++) {
+            sensorGivesUpWhileDisplayQueues();
+        }
+    }
+
+    private void sensorGivesUpWhileDisplayQueues() throws Exception {
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch releaseBus = new CountDownLatch(1);
+        LcdPlateEmulator bus = new LcdPlateEmulator(2, 16) {
+            @Override
+            public synchronized int read(int address) {
+                holding.countDown();
+                try {
+                    releaseBus.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.read(address);
+            }
+        };
+        I2CBusScheduler scheduler = new I2CBusScheduler();
+        I2CBusScheduler.Client holder = scheduler.add(bus, "holder", I2CBusScheduler.PRIORITY_DISPLAY);
+        I2CBusScheduler.Client display = scheduler.add(bus, "display", I2CBusScheduler.PRIORITY_DISPLAY);
+        I2CBusScheduler.Client sensor = scheduler.add(bus, "sensor", I2CBusScheduler.PRIORITY_SENSOR);
+
+        Thread holderThread = new Thread(() -> {
+            try {
+                holder.read(0);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        holderThread.start();
+        holding.await();
+
+        AtomicReference<Exception> sensorFailure = new AtomicReference<>();
+        Thread sensorThread = new Thread(() -> {
+            try {
+                sensor.read(0);
+            } catch (Exception e) {
+                sensorFailure.set(e);
+            }
+        });
+        sensorThread.start();
+        waitUntil(sensorThread, Thread.State.WAITING);
+
+        CountDownLatch displayDone = new CountDownLatch(1);
+        Thread displayThread = new Thread(() -> {
+            try {
+                display.write(0, (byte) 0);
+                displayDone.countDown();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        // the sensor gives up, the display queues up and the bus gets released, all at once:
+        // the display may look at the free bus while the sensor still counts as waiting
+        synchronized (scheduler) {
+            sensorThread.interrupt();
+            waitUntil(sensorThread, Thread.State.BLOCKED);
+            displayThread.start();
+            waitUntil(displayThread, Thread.State.BLOCKED);
+            releaseBus.countDown();
+            waitUntil(holderThread, Thread.State.BLOCKED);
+        }
+        holderThread.join();
+        sensorThread.join();
+
+        assertTrue("display still blocked", displayDone.await(5, TimeUnit.SECONDS));
+        assertTrue(sensorFailure.get() instanceof InterruptedIOException);
+        assertEquals(1, display.getTransfers());
+        assertEquals(0, sensor.getTransfers());
+    }
+
+    private static void waitUntil(Thread thread, Thread.State state) throws InterruptedException {
+        while (thread.getState() != state) {
+            Thread.sleep(1);
+        }
+    }
+}
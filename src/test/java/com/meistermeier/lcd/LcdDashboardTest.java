@@ -0,0 +1,35 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LcdDashboardTest {
+
+    @Test
+    public void textLongerThanItsFieldIsCutOff() {
+        LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+        LcdPlate lcd = new LcdPlate(emulator, 2, 16);
+        LcdDashboard dashboard = new LcdDashboard(new LcdFrameBuffer(lcd, 2, 16));
+        // a wider field makes the shared format buffer longer than the text field
+        dashboard.bind(0, 0, 4, LcdDashboard.Alignment.LEFT, () -> "abcdefgh");
+        dashboard.bind(1, 0, 12, LcdDashboard.Alignment.RIGHT, () -> 42L);
+
+        dashboard.sample();
+
+        assertEquals("abcd            ", emulator.getVisibleText(0));
+        assertEquals("          42    ", emulator.getVisibleText(1));
+    }
+
+    @Test
+    public void numberTooWideForItsFieldIsShownAsOverflow() {
+        LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+        LcdPlate lcd = new LcdPlate(emulator, 2, 16);
+        LcdDashboard dashboard = new LcdDashboard(new LcdFrameBuffer(lcd, 2, 16));
+        dashboard.bind(0, 0, 3, LcdDashboard.Alignment.RIGHT, () -> 12345L);
+
+        dashboard.sample();
+
+        assertEquals("###             ", emulator.getVisibleText(0));
+    }
+}
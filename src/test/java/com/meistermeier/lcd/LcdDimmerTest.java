@@ -0,0 +1,128 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LcdDimmerTest {
+
+    private static final int RED = LcdBackgroundColor.RED.getColorValue();
+    private static final int GREEN = LcdBackgroundColor.GREEN.getColorValue();
+    private static final int YELLOW = LcdBackgroundColor.YELLOW.getColorValue();
+
+    private final BacklightRecorder emulator = new BacklightRecorder();
+    private final LcdPlate lcd = new LcdPlate(emulator, 2, 16);
+
+    @Test(timeout = 5000)
+    public void channelsSwitchOffAtTheirEdges() throws InterruptedException {
+        try (LcdDimmer dimmer = new LcdDimmer(lcd)) {
+            emulator.take();
+            dimmer.setLevels(LcdDimmer.LEVELS / 2, LcdDimmer.LEVELS / 4, 0);
+            TimeUnit.MILLISECONDS.sleep(100);
+            List<Integer> colors = emulator.take();
+            // both on, green off after a quarter, red off after half the period
+            int cycles = 0;
+            for (int i = 0; i + 2 < colors.size(); i++) {
+                if (colors.get(i) == YELLOW) {
+                    assertEquals(RED, (int) colors.get(i + 1));
+                    assertEquals(0, (int) colors.get(i + 2));
+                    cycles++;
+                }
+            }
+            assertTrue(cycles > 0);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void channelsOfTheSameLevelShareAnEdge() throws InterruptedException {
+        try (LcdDimmer dimmer = new LcdDimmer(lcd)) {
+            emulator.take();
+            dimmer.setLevels(LcdDimmer.LEVELS / 2, LcdDimmer.LEVELS / 2, 0);
+            TimeUnit.MILLISECONDS.sleep(100);
+            List<Integer> colors = emulator.take();
+            assertTrue(colors.size() > 2);
+            for (int color : colors) {
+                assertTrue("colour " + color, color == YELLOW || color == 0);
+            }
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void staticColourCostsNoBusTraffic() throws InterruptedException {
+        try (LcdDimmer dimmer = new LcdDimmer(lcd)) {
+            dimmer.setColor(LcdBackgroundColor.GREEN, 1);
+            TimeUnit.MILLISECONDS.sleep(50);
+            assertEquals(GREEN, emulator.getBacklight());
+            emulator.take();
+            TimeUnit.MILLISECONDS.sleep(50);
+            assertEquals(0, emulator.take().size());
+            assertEquals(0, dimmer.getBusShare(), 0);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void fadeEndsAtTheTargetColour() throws InterruptedException {
+        LcdDimmer dimmer = new LcdDimmer(lcd);
+        dimmer.setColor(LcdBackgroundColor.RED, 1);
+        dimmer.fadeTo(LcdBackgroundColor.GREEN, 1, 50);
+        TimeUnit.MILLISECONDS.sleep(150);
+        emulator.take();
+        TimeUnit.MILLISECONDS.sleep(50);
+        // the fade is over and full green needs no edges
+        assertEquals(0, emulator.take().size());
+        assertEquals(GREEN, emulator.getBacklight());
+        dimmer.close();
+        assertEquals(GREEN, emulator.getBacklight());
+    }
+
+    @Test(timeout = 5000)
+    public void closeRoundsToOnOrOff() {
+        LcdDimmer dimmer = new LcdDimmer(lcd);
+        dimmer.setLevels(LcdDimmer.LEVELS / 2, LcdDimmer.LEVELS / 2 - 1, 0);
+        dimmer.close();
+        assertEquals(RED, emulator.getBacklight());
+    }
+
+    @Test(timeout = 5000)
+    public void edgesKeepToTheirBusShare() throws InterruptedException {
+        emulator.writeNanos = TimeUnit.MICROSECONDS.toNanos(100);
+        try (LcdDimmer dimmer = new LcdDimmer(lcd)) {
+            dimmer.setMaxBusShare(0.1);
+            dimmer.setLevels(3, 7, 11);
+            TimeUnit.MILLISECONDS.sleep(500);
+            double share = dimmer.getBusShare();
+            assertTrue("share " + share, share > 0 && share <= 0.1 * 1.01);
+        }
+    }
+
+    // Remembers the colour after every single register write, optionally slowing them down
+    private static class BacklightRecorder extends LcdPlateEmulator {
+        private final List<Integer> colors = new ArrayList<>();
+        private volatile long writeNanos;
+
+        BacklightRecorder() {
+            super(2, 16);
+        }
+
+        @Override
+        public synchronized void write(int address, byte b) {
+            if (writeNanos > 0) {
+                LockSupport.parkNanos(writeNanos);
+            }
+            super.write(address, b);
+            colors.add(getBacklight());
+        }
+
+        synchronized List<Integer> take() {
+            List<Integer> taken = new ArrayList<>(colors);
+            colors.clear();
+            return taken;
+        }
+    }
+}
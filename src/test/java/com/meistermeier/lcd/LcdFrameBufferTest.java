@@ -0,0 +1,53 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LcdFrameBufferTest {
+
+    private final LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+    private final LcdFrameBuffer screen = new LcdFrameBuffer(new LcdPlate(emulator, 2, 16), 2, 16);
+
+    @Test
+    public void onlyChangedCellsAreSent() {
+        assertEquals(16, draw("first line\nsecond"));
+        assertEquals("first line      ", emulator.getVisibleText(0));
+        assertEquals("second          ", emulator.getVisibleText(1));
+
+        emulator.resetCounters();
+        assertEquals(0, draw("first line\nsecond"));
+        assertEquals(0, emulator.getTransactionCount());
+
+        assertEquals(1, draw("first Line\nsecond"));
+        assertEquals("first Line      ", emulator.getVisibleText(0));
+    }
+
+    @Test
+    public void gapOfOneCellIsRewrittenInsteadOfJumped() {
+        draw("abcde");
+        // changes at 1 and 3, rewriting c costs as much as a jump
+        assertEquals(3, draw("aBcDe"));
+        assertEquals("aBcDe           ", emulator.getVisibleText(0));
+    }
+
+    @Test
+    public void longerGapIsJumped() {
+        draw("abcdef");
+        assertEquals(2, draw("aBcdEf"));
+        assertEquals("aBcdEf          ", emulator.getVisibleText(0));
+    }
+
+    @Test
+    public void invalidateRewritesEveryCell() {
+        draw("same");
+        screen.invalidate();
+        assertEquals(32, screen.flush());
+        assertEquals("same            ", emulator.getVisibleText(0));
+    }
+
+    private int draw(String text) {
+        screen.setFrame(text);
+        return screen.flush();
+    }
+}
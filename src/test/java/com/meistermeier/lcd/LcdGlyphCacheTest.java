@@ -0,0 +1,48 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LcdGlyphCacheTest {
+
+    private static byte[] glyph(int n) {
+        return new byte[]{(byte) n, (byte) (n >> 5), 0, 0, 0, 0, 0, 1};
+    }
+
+    @Test
+    public void slotsHandedOutBeforeTheFlushAreNotReplaced() {
+        LcdPlate lcd = new LcdPlate(new LcdPlateEmulator(2, 16), 2, 16);
+        LcdFrameBuffer screen = new LcdFrameBuffer(lcd, 2, 16);
+        LcdGlyphCache cache = new LcdGlyphCache(lcd, screen);
+        boolean[] used = new boolean[8];
+        for (int i = 0; i < 8; i++) {
+            char slot = cache.get(glyph(i));
+            assertTrue("slot " + (int) slot + " handed out twice", slot < 8 && !used[slot]);
+            used[slot] = true;
+        }
+        // none of them is in the frame yet, but all are pinned until the flush
+        assertEquals('?', cache.get(glyph(8)));
+        assertEquals('?', cache.get(glyph(9)));
+        assertEquals(8, cache.getUploads());
+    }
+
+    @Test
+    public void slotsNotShownAfterTheFlushAreReplaced() {
+        LcdPlate lcd = new LcdPlate(new LcdPlateEmulator(2, 16), 2, 16);
+        LcdFrameBuffer screen = new LcdFrameBuffer(lcd, 2, 16);
+        LcdGlyphCache cache = new LcdGlyphCache(lcd, screen);
+        for (int i = 0; i < 8; i++) {
+            char slot = cache.get(glyph(i));
+            if (i < 4) {
+                screen.set(0, i, slot);
+            }
+        }
+        screen.flush();
+
+        char slot = cache.get(glyph(8));
+
+        assertTrue("replaced a visible slot " + (int) slot, slot >= 4 && slot < 8);
+    }
+}
@@ -0,0 +1,124 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LcdLogTailTest {
+
+    private final LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+    private final LcdFrameBuffer screen = new LcdFrameBuffer(new LcdPlate(emulator, 2, 16), 2, 16);
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, accepted(1));
+        assertEquals(2, accepted(2));
+        assertEquals(4, accepted(3));
+        assertEquals(4, accepted(4));
+        assertEquals(8, accepted(5));
+    }
+
+    private int accepted(int capacity) {
+        return accepted(new LcdLogTail(screen, capacity));
+    }
+
+    // Append until the queue is full
+    private static int accepted(LcdLogTail tail) {
+        int accepted = 0;
+        while (tail.append('I', "line")) {
+            accepted++;
+        }
+        return accepted;
+    }
+
+    @Test(timeout = 10000)
+    public void contendingWritersFillEverySlotOnce() throws Exception {
+        LcdLogTail tail = new LcdLogTail(screen, 256);
+        AtomicInteger accepted = new AtomicInteger();
+        runWriters(4, 64, tail, accepted);
+        assertEquals(256, accepted.get());
+        assertFalse(tail.append('I', "full"));
+
+        tail.draw();
+        // one overflow, all but the two shown superseded
+        assertEquals(1 + 254, tail.getDropped());
+        assertWellFormed(emulator.getVisibleText(0));
+        assertWellFormed(emulator.getVisibleText(1));
+        // every slot was handed back
+        assertEquals(256, accepted(tail));
+    }
+
+    @Test(timeout = 10000)
+    public void linesSurviveAConcurrentReader() throws Exception {
+        LcdLogTail tail = new LcdLogTail(screen, 16);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                tail.draw();
+                for (int row = 0; row < 2; row++) {
+                    String text = emulator.getVisibleText(row);
+                    if (!wellFormed(text)) {
+                        torn.compareAndSet(null, text);
+                    }
+                }
+            }
+        });
+        reader.start();
+        runWriters(4, 2000, tail, accepted);
+        writing.set(false);
+        reader.join();
+        tail.draw();
+
+        assertNull(torn.get());
+        assertTrue(accepted.get() > 0);
+        // lines refused by a full queue are counted too
+        assertTrue(tail.getDropped() >= 4 * 2000 - accepted.get());
+        assertEquals(16, accepted(tail));
+    }
+
+    private static void runWriters(int count, int lines, LcdLogTail tail, AtomicInteger accepted)
+            throws Exception {
+        CyclicBarrier start = new CyclicBarrier(count);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < count; w++) {
+            int writer = w;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (Exception e) {
+                    return;
+                }
+                for (int i = 0; i < lines; i++) {
+                    if (tail.append('I', writer + ":" + i)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            writers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.join();
+        }
+    }
+
+    private static void assertWellFormed(String row) {
+        assertTrue(row, wellFormed(row));
+    }
+
+    private static boolean wellFormed(String row) {
+        return row.trim().isEmpty() || row.matches("I \\d:\\d+ *");
+    }
+}
@@ -0,0 +1,36 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LcdMetricsTest {
+
+    @Test
+    public void commandCountsReachJmxClientsAsOpenTypes() throws Exception {
+        LcdMetrics metrics = new LcdMetrics();
+        LcdPlate lcd = new LcdPlate(new LcdPlateEmulator(2, 16), 2, 16, metrics);
+        lcd.clear();
+        lcd.clear();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.register("test");
+        try {
+            Object counts = server.getAttribute(name, "CommandCounts");
+            assertTrue(counts.getClass().getName(), counts instanceof TabularData);
+            CompositeData clears = ((TabularData) counts).get(new Object[]{"CLEAR"});
+            // one from the initialization
+            assertEquals(3L, clears.get("value"));
+            assertTrue((Long) server.getAttribute(name, "BytesWritten") > 0);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LcdPageFlipperTest {
+
+    private final LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+    private final LcdPlate lcd = new LcdPlate(emulator, 2, 16);
+    private final LcdPageFlipper flipper = new LcdPageFlipper(lcd, 2, 16);
+
+    @Test
+    public void pagesAlternateBetweenTheWindows() {
+        assertTrue(flipper.isDoubleBuffered());
+        flipper.show("one");
+        assertEquals(16, emulator.getDisplayOffset());
+        assertEquals("one             ", emulator.getVisibleText(0));
+
+        flipper.show("two\nlines");
+        assertEquals(0, emulator.getDisplayOffset());
+        assertEquals("two             ", emulator.getVisibleText(0));
+        assertEquals("lines           ", emulator.getVisibleText(1));
+
+        // back in the window of "one", only the difference is written
+        assertEquals(1, flipper.show("onE"));
+        assertEquals(16, emulator.getDisplayOffset());
+        assertEquals("onE             ", emulator.getVisibleText(0));
+    }
+
+    @Test
+    public void flippingBackNeedsNoBusyWait() {
+        flipper.show("one");
+        flipper.show("two");
+        lcd.write("");
+        emulator.resetCounters();
+        flipper.show("three");
+        flipper.show("four");
+        assertEquals(0, emulator.getBytesRead());
+    }
+}
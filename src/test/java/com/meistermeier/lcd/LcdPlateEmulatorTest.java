@@ -0,0 +1,103 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LcdPlateEmulatorTest {
+
+    // BANK=1 addresses as the driver uses them
+    private static final int IODIRB = 0x10;
+    private static final int GPIOB = 0x19;
+
+    @Test
+    public void bankOneAddressesMapOntoBankZero() {
+        LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+        // BANK=0 after reset: IODIRA, IODIRB, IPOLA, IPOLB in sequence
+        emulator.write(0x00, new byte[]{0x11, 0x22, 0x33, 0x44}, 0, 4);
+        emulator.write(0x0A, (byte) 0b10100000); // IOCON: BANK=1, SEQOP off
+
+        assertEquals(0x11, emulator.read(0x00));
+        assertEquals(0x22, emulator.read(0x10));
+        assertEquals(0x33, emulator.read(0x01));
+        assertEquals(0x44, emulator.read(0x11));
+        assertEquals(0b10100000, emulator.read(0x05));
+        assertEquals(0b10100000, emulator.read(0x15));
+        // with sequential operation off every byte of a block goes to the same register
+        emulator.write(0x02, new byte[]{0x55, 0x66}, 0, 2);
+        assertEquals(0x66, emulator.read(0x02));
+        assertEquals(0, emulator.read(0x03));
+
+        emulator.write(0x10, (byte) 0x77);
+        emulator.write(0x05, (byte) 0); // back to BANK=0
+        assertEquals(0x77, emulator.read(0x01));
+        assertEquals(0x66, emulator.read(0x04));
+    }
+
+    @Test
+    public void busyFlagIsSetWhileClearRuns() throws InterruptedException {
+        LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+        new LcdPlate(emulator, 2, 16);
+        TimeUnit.MILLISECONDS.sleep(2);
+        emulator.write(IODIRB, (byte) 0);
+        assertFalse(busy(emulator));
+
+        // 1.52 ms are plenty, but this thread may still be descheduled in between
+        boolean seen = false;
+        for (int attempt = 0; attempt < 20 && !seen; attempt++) {
+            send(emulator, false, 0x01);
+            seen = busy(emulator);
+            TimeUnit.MILLISECONDS.sleep(2);
+        }
+        assertTrue(seen);
+        assertFalse(busy(emulator));
+    }
+
+    @Test
+    public void writesWhileBusyAreViolations() throws InterruptedException {
+        LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+        new LcdPlate(emulator, 2, 16);
+        TimeUnit.MILLISECONDS.sleep(2);
+        emulator.write(IODIRB, (byte) 0);
+        emulator.resetCounters();
+
+        send(emulator, false, 0x01);
+        TimeUnit.MILLISECONDS.sleep(2);
+        send(emulator, true, 'a');
+        assertEquals(0, emulator.getBusyViolations());
+
+        boolean violated = false;
+        for (int attempt = 0; attempt < 20 && !violated; attempt++) {
+            send(emulator, false, 0x01);
+            send(emulator, true, 'b');
+            violated = emulator.getBusyViolations() > 0;
+            TimeUnit.MILLISECONDS.sleep(2);
+        }
+        assertTrue(violated);
+    }
+
+    // One byte in two nibbles, D4-D7 reversed on PORTB4-1, latched on the falling edge of E
+    private static void send(LcdPlateEmulator emulator, boolean data, int value) {
+        int rs = data ? 0b10000000 : 0;
+        for (int nibble : new int[]{value >> 4 & 0x0F, value & 0x0F}) {
+            int pins = rs | (nibble & 1) << 4 | (nibble & 2) << 2 | (nibble & 4) | (nibble & 8) >> 2;
+            emulator.write(GPIOB, (byte) (pins | 0b00100000));
+            emulator.write(GPIOB, (byte) pins);
+        }
+    }
+
+    // Read the busy flag and address counter, then make D4-D7 outputs again
+    private static boolean busy(LcdPlateEmulator emulator) {
+        emulator.write(IODIRB, (byte) 0b00011110);
+        emulator.write(GPIOB, (byte) 0b01000000);
+        emulator.write(GPIOB, (byte) 0b01100000);
+        int high = emulator.read(GPIOB);
+        emulator.write(GPIOB, new byte[]{0b01000000, 0b01100000, 0b01000000}, 0, 3);
+        emulator.write(IODIRB, (byte) 0);
+        return (high & 0b00000010) != 0;
+    }
+}
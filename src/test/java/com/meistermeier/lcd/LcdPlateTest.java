@@ -0,0 +1,81 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LcdPlateTest {
+
+    @Test
+    public void calibratedBusyWaitLetsClearComplete() {
+        assertEquals(0, busyViolationsAfterClears(BusyWait.CALIBRATED));
+    }
+
+    @Test
+    public void polledBusyWaitLetsClearComplete() {
+        assertEquals(0, busyViolationsAfterClears(BusyWait.POLL));
+    }
+
+    @Test
+    public void fixedBusyWaitLetsClearComplete() {
+        assertEquals(0, busyViolationsAfterClears(BusyWait.FIXED_DELAY));
+    }
+
+    private static long busyViolationsAfterClears(BusyWait busyWait) {
+        LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+        LcdPlate lcd = new LcdPlate(emulator, 2, 16);
+        lcd.setBusyWait(busyWait);
+        // the first clear is polled (and measured), the second one sleeps
+        lcd.clear();
+        lcd.clear();
+        lcd.message("x");
+        assertEquals("x               ", emulator.getVisibleText(0));
+        return emulator.getBusyViolations();
+    }
+
+    @Test
+    public void pollTimeoutStillSendsThePendingByte() {
+        LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+        FaultyDevice device = new FaultyDevice(emulator);
+        LcdPlate lcd = new LcdPlate(device, 2, 16);
+        lcd.setPollTimeoutMillis(1);
+        assertNull(lcd.takeError());
+        device.stuck = true;
+        lcd.clear();
+        lcd.message("x");
+        assertNotNull(lcd.takeError());
+        assertEquals("x               ", emulator.getVisibleText(0));
+
+        // D7 is no input anymore, the next write doesn't poll
+        lcd.message("yz");
+        assertNull(lcd.takeError());
+        assertEquals("xyz             ", emulator.getVisibleText(0));
+    }
+
+    @Test
+    public void attachWaitsOutAPendingHomeInsteadOfPolling() {
+        LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+        LcdPlate previous = new LcdPlate(emulator, 2, 16);
+        previous.message("kept");
+        // the previous driver went away right after a home, D7 is still an input
+        previous.home();
+        emulator.resetCounters();
+
+        // a busy flag read out of step would never clear
+        FaultyDevice device = new FaultyDevice(emulator);
+        device.stuck = true;
+        LcdPlate lcd = LcdPlate.attach(device, 2, 16, null);
+        assertTrue(lcd.isAttached());
+        assertNull(lcd.takeError());
+        device.stuck = false;
+        assertEquals(0, emulator.getBusyViolations());
+        lcd.setCursor(0, 1);
+        lcd.message("on");
+        assertEquals("kept            ", emulator.getVisibleText(0));
+        assertEquals("on              ", emulator.getVisibleText(1));
+        assertEquals(0, emulator.getBusyViolations());
+    }
+}
@@ -0,0 +1,81 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LcdServerTest {
+
+    private final LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+
+    @Test(timeout = 5000)
+    public void committedRegionsAreMerged() throws Exception {
+        try (LcdServer server = startServer();
+             LcdClient left = new LcdClient(server.getPort());
+             LcdClient right = new LcdClient(server.getPort())) {
+            assertTrue(left.claim(0, 0, 8, 1));
+            assertTrue(right.claim(0, 8, 8, 2));
+            assertFalse(left.claim(1, 4, 8, 1));
+            left.write(0, 0, "left");
+            right.write(0, 0, "right");
+            right.write(1, 0, "below");
+            // nothing shows before the commit
+            right.commit();
+            awaitText(0, "        right   ");
+            left.commit();
+            awaitText(0, "left    right   ");
+            awaitText(1, "        below   ");
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void regionOfADisconnectedClientIsBlankedAndFree() throws Exception {
+        try (LcdServer server = startServer();
+             LcdClient stays = new LcdClient(server.getPort())) {
+            LcdClient leaves = new LcdClient(server.getPort());
+            assertTrue(leaves.claim(0, 0, 8, 1));
+            assertTrue(stays.claim(0, 8, 8, 1));
+            leaves.write(0, 0, "gone");
+            leaves.commit();
+            stays.write(0, 0, "here");
+            stays.commit();
+            awaitText(0, "gone    here    ");
+
+            leaves.close();
+            awaitText(0, "        here    ");
+            assertTrue(stays.claim(0, 0, 16, 1));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void longerFrameTakesEffectWhileRunning() throws Exception {
+        try (LcdServer server = startServer();
+             LcdClient client = new LcdClient(server.getPort())) {
+            server.setFrameMillis(60_000);
+            assertTrue(client.claim(0, 0, 16, 1));
+            client.write(0, 0, "slow");
+            client.commit();
+            // the frame after this one lasts a minute
+            awaitText(0, "slow            ");
+            client.write(0, 0, "fast");
+            client.commit();
+            Thread.sleep(200);
+            assertFalse("fast            ".equals(emulator.getVisibleText(0)));
+        }
+    }
+
+    private LcdServer startServer() throws Exception {
+        LcdServer server = new LcdServer(new LcdPlate(emulator, 2, 16), 2, 16, 0);
+        server.setFrameMillis(1);
+        server.setCommitsPerSecond(1000);
+        server.start();
+        return server;
+    }
+
+    private void awaitText(int row, String text) throws InterruptedException {
+        while (!text.equals(emulator.getVisibleText(row))) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.meistermeier.lcd;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class LcdTransactionPlannerTest {
+
+    private static final int GPIOB = 0x19;
+    private static final int RS = 0b10000000;
+
+    private final LcdPlateEmulator emulator = new LcdPlateEmulator(2, 16);
+    private final LcdTransactionPlanner planner;
+
+    public LcdTransactionPlannerTest() {
+        LcdPlate lcd = new LcdPlate(emulator, 2, 16);
+        // wait for the home at the end of the initialization
+        lcd.write("");
+        planner = new LcdTransactionPlanner(emulator, GPIOB, new RegisterShadow(emulator));
+    }
+
+    @Test
+    public void blockWritesAreSplitAtTheTransferSize() throws IOException {
+        append("sixteen chars!!!");
+        emulator.resetCounters();
+        planner.flush();
+        // 64 bytes of strobes in two full SMBus blocks
+        assertEquals(2, emulator.getTransactionCount());
+        assertEquals(64, emulator.getBytesWritten());
+        assertEquals("sixteen chars!!!", emulator.getVisibleText(0));
+    }
+
+    @Test
+    public void transfersEndBetweenTwoSequences() throws IOException {
+        planner.setMaxTransferSize(30);
+        assertEquals(28, planner.getMaxTransferSize());
+        append("sixteen chars!!!");
+        emulator.resetCounters();
+        planner.flush();
+        // 28 + 28 + 8
+        assertEquals(3, emulator.getTransactionCount());
+        assertEquals(64, emulator.getBytesWritten());
+        assertEquals("sixteen chars!!!", emulator.getVisibleText(0));
+    }
+
+    @Test
+    public void transferMustHoldOneSequence() {
+        planner.setMaxTransferSize(4);
+        try {
+            planner.setMaxTransferSize(3);
+            fail("accepted 3 bytes");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void flushWithNothingQueuedSendsNothing() throws IOException {
+        emulator.resetCounters();
+        planner.flush();
+        assertEquals(0, emulator.getTransactionCount());
+    }
+
+    private void append(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            planner.append(RS, text.charAt(i));
+        }
+    }
+}